@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "code"
@@ -12,6 +13,7 @@ repositories {
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     implementation("com.h2database:h2:2.2.220")
     compileOnly("org.projectlombok:lombok:1.18.34")
     annotationProcessor("org.projectlombok:lombok:1.18.34")
@@ -19,4 +21,17 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// Бенчмарки лежат в src/jmh/java и запускаются через `gradle jmh`.
+// Результаты пишутся в JSON с версией в имени файла, чтобы сравнивать релизы между собой.
+// Отдельные бенчмарки: `gradle jmh -Pjmh.includes=PointLookupBenchmark`.
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results-${project.version}.json"))
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
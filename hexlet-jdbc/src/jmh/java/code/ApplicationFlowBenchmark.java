@@ -0,0 +1,63 @@
+package code;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Полный сценарий "сырого" JDBC из {@link Application}: открыть соединение, создать таблицу,
+ * вставить четыре строки, удалить одну по имени и выбрать оставшиеся по {@code ORDER BY username}.
+ *
+ * <p>Каждый вызов работает со своей БД в памяти, поэтому в замер входит и установка соединения.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ApplicationFlowBenchmark {
+    private long counter;
+
+    @Benchmark
+    public void rawJdbcFlow(Blackhole blackhole) throws SQLException {
+        try (var conn = DriverManager.getConnection("jdbc:h2:mem:flow_" + counter++)) {
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("""
+                    CREATE TABLE users (
+                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                        username VARCHAR(255),
+                        phone VARCHAR(255)
+                    )
+                    """);
+            }
+
+            try (var stmt = conn.prepareStatement("INSERT INTO users (username, phone) VALUES (?, ?)")) {
+                String[][] rows = {{"alan", "123456000"}, {"mol", "12345312"}, {"ken", "123456"}, {"tommy", "123456789"}};
+                for (var row : rows) {
+                    stmt.setString(1, row[0]);
+                    stmt.setString(2, row[1]);
+                    stmt.executeUpdate();
+                }
+            }
+
+            try (var stmt = conn.prepareStatement("DELETE FROM users WHERE username = ?")) {
+                stmt.setString(1, "alan");
+                stmt.executeUpdate();
+            }
+
+            try (var stmt = conn.createStatement();
+                 var rs = stmt.executeQuery("SELECT id, username, phone FROM users ORDER BY username")) {
+                while (rs.next()) {
+                    blackhole.consume(rs.getLong("id"));
+                    blackhole.consume(rs.getString("username"));
+                    blackhole.consume(rs.getString("phone"));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@value #LOOKUPS} одновременных поисков через {@link AsyncUserDAO#find(Long)}: все future создаются сразу,
+ * затем бенчмарк ждёт их завершения.
+ *
+ * <p>Сравниваются исполнители:
+ * <ul>
+ *   <li>{@code virtual} — виртуальный поток на операцию. Нужна Java 21+: на более старой JVM
+ *       {@link AsyncUserDAO} перешёл бы на пул платформенных потоков, и сравнение потеряло бы смысл,
+ *       поэтому этот вариант там отказывается запускаться;</li>
+ *   <li>{@code platform} — пул из {@value #PLATFORM_THREADS} платформенных потоков, как у типичного
+ *       сервера приложений.</li>
+ * </ul>
+ * В обоих случаях к БД одновременно обращаются не больше {@code connections} операций, и пул соединений
+ * того же размера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AsyncLookupBenchmark {
+    private static final int LOOKUPS = 10_000;
+    private static final int TABLE_SIZE = 100_000;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"virtual", "platform"})
+    public String executor;
+
+    @Param({"8", "32"})
+    public int connections;
+
+    private BenchmarkDatabase database;
+    private AsyncUserDAO users;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(BenchmarkDatabase.MEM, TABLE_SIZE, connections);
+        var userDAO = new UserDAO(database.pool());
+        if ("virtual".equals(executor)) {
+            if (!AsyncUserDAO.isVirtualThreadsSupported()) {
+                database.close();
+                throw new IllegalStateException("Virtual threads require Java 21+, running on "
+                        + Runtime.version());
+            }
+            users = new AsyncUserDAO(userDAO, connections);
+        } else {
+            users = new AsyncUserDAO(userDAO, Executors.newFixedThreadPool(PLATFORM_THREADS), connections);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        users.close();
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public Object find() {
+        var ids = database.ids();
+        var random = ThreadLocalRandom.current();
+        var futures = new CompletableFuture<?>[LOOKUPS];
+        for (var i = 0; i < LOOKUPS; i++) {
+            futures[i] = users.find(ids[random.nextInt(ids.length)]);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
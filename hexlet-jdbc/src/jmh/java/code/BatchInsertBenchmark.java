@@ -0,0 +1,72 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Вставка {@value #ROWS} пользователей построчно через {@link UserDAO#save(User)}
+ * и пакетами через {@link UserDAO#saveAll(java.util.Collection, int)}.
+ *
+ * <p>Результат — пропускная способность в строках в секунду.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchInsertBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({BenchmarkDatabase.MEM, BenchmarkDatabase.FILE})
+    public String storage;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    private BenchmarkDatabase database;
+    private UserDAO userDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(storage, 0, 1);
+        userDAO = new UserDAO(database.pool());
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws SQLException {
+        database.truncate();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void saveEach() throws SQLException {
+        for (var i = 0; i < ROWS; i++) {
+            userDAO.save(new User("user_" + i, "555" + i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public BatchStats saveAll() throws SQLException {
+        var users = new ArrayList<User>(ROWS);
+        for (var i = 0; i < ROWS; i++) {
+            users.add(new User("user_" + i, "555" + i));
+        }
+        return userDAO.saveAll(users, batchSize);
+    }
+}
@@ -0,0 +1,112 @@
+package code;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Тестовая БД H2 для бенчмарков: в памяти ({@code mem}) или в файле ({@code file}).
+ *
+ * <p>Создаёт таблицу {@code users} без вторичных индексов, заполняет её и отдаёт соединения через {@link ConnectionPool}.
+ * При закрытии БД останавливается, а файлы удаляются.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    static final String MEM = "mem";
+    static final String FILE = "file";
+
+    private final String url;
+    private final ConnectionPool pool;
+    private final Path directory;
+    private final long[] ids;
+
+    private BenchmarkDatabase(String url, ConnectionPool pool, Path directory, long[] ids) {
+        this.url = url;
+        this.pool = pool;
+        this.directory = directory;
+        this.ids = ids;
+    }
+
+    /**
+     * @param storage  {@link #MEM} или {@link #FILE}
+     * @param rows     сколько пользователей вставить
+     * @param poolSize максимальный размер пула соединений
+     */
+    static BenchmarkDatabase open(String storage, int rows, int poolSize) throws SQLException {
+        Path directory = null;
+        String url;
+        if (MEM.equals(storage)) {
+            url = "jdbc:h2:mem:bench_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1";
+        } else if (FILE.equals(storage)) {
+            try {
+                directory = Files.createTempDirectory("hexlet-jdbc-bench");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            url = "jdbc:h2:file:" + directory.resolve("bench").toAbsolutePath();
+        } else {
+            throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+
+        var pool = new ConnectionPoolBuilder().withUrl(url).withMaxSize(poolSize).build();
+        try (var connection = pool.getConnection()) {
+            UserSchema.createTable(connection);
+        }
+
+        var users = new ArrayList<User>(rows);
+        for (var i = 0; i < rows; i++) {
+            users.add(new User("user_" + i, "555" + i));
+        }
+        new UserDAO(pool).saveAll(users, 1_000);
+        var ids = users.stream().mapToLong(User::getId).toArray();
+        return new BenchmarkDatabase(url, pool, directory, ids);
+    }
+
+    /**
+     * @return JDBC URL базы, например для {@link ThreadConfinedDataSource}
+     */
+    String url() {
+        return url;
+    }
+
+    ConnectionPool pool() {
+        return pool;
+    }
+
+    /**
+     * @return ID пользователей, вставленных при заполнении
+     */
+    long[] ids() {
+        return ids;
+    }
+
+    void truncate() throws SQLException {
+        try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+            stmt.execute("TRUNCATE TABLE users");
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        } finally {
+            pool.close();
+            if (directory != null) {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
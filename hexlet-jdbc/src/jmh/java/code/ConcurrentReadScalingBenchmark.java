@@ -0,0 +1,95 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Масштабирование чтения {@link UserDAO#find(Long)} с числом потоков на H2 (MVStore) в памяти.
+ *
+ * <p>Один DAO делится между {@code threads} рабочими потоками; за одно выполнение бенчмарка они вместе
+ * делают {@value #LOOKUPS} поисков. Результат — поиски в миллисекунду: при линейном масштабировании
+ * он растёт пропорционально числу потоков, пока их не больше числа ядер.
+ *
+ * <p>Источник соединений — {@link ConnectionPool} ({@code pool}) или {@link ThreadConfinedDataSource}
+ * ({@code confined}). Пул размером с число потоков, поэтому ожидание соединения не ограничивает рост.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrentReadScalingBenchmark {
+    private static final int LOOKUPS = 10_000;
+    private static final int TABLE_SIZE = 100_000;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    @Param({"pool", "confined"})
+    public String source;
+
+    private BenchmarkDatabase database;
+    private ThreadConfinedDataSource confined;
+    private ExecutorService executor;
+    private List<Callable<Object>> tasks;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(BenchmarkDatabase.MEM, TABLE_SIZE, threads);
+        UserDAO userDAO;
+        if ("confined".equals(source)) {
+            confined = new ThreadConfinedDataSource(database.url());
+            userDAO = new UserDAO(confined);
+        } else {
+            userDAO = new UserDAO(database.pool());
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        tasks = new ArrayList<>(threads);
+        var ids = database.ids();
+        for (var t = 0; t < threads; t++) {
+            var share = LOOKUPS / threads + (t < LOOKUPS % threads ? 1 : 0);
+            tasks.add(() -> {
+                var random = ThreadLocalRandom.current();
+                Object last = null;
+                for (var i = 0; i < share; i++) {
+                    last = userDAO.find(ids[random.nextInt(ids.length)]);
+                }
+                return last;
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        executor.shutdownNow();
+        if (confined != null) {
+            confined.close();
+        }
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public Object find() throws InterruptedException, ExecutionException {
+        Object last = null;
+        for (var future : executor.invokeAll(tasks)) {
+            last = future.get();
+        }
+        return last;
+    }
+}
@@ -0,0 +1,57 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Накладные расходы {@link DaoMetrics}: запись одной операции напрямую и {@link UserDAO#find(Long)}
+ * с включёнными и выключенными метриками.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DaoMetricsBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"true", "false"})
+    public boolean enabled;
+
+    private BenchmarkDatabase database;
+    private DaoMetrics metrics;
+    private UserDAO userDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(BenchmarkDatabase.MEM, ROWS, Runtime.getRuntime().availableProcessors());
+        metrics = new DaoMetrics();
+        metrics.setEnabled(enabled);
+        userDAO = new UserDAOBuilder().withDataSource(database.pool()).withMetrics(metrics).build();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public void record() {
+        var start = metrics.start();
+        metrics.success(DaoOperation.FIND, start, 1);
+    }
+
+    @Benchmark
+    public Object find() throws SQLException {
+        var ids = database.ids();
+        return userDAO.find(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+}
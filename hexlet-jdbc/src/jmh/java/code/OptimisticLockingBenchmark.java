@@ -0,0 +1,138 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Параллельные обновления одних и тех же пользователей: оптимистическая блокировка против
+ * {@code SELECT ... FOR UPDATE} на H2 (MVStore) в памяти.
+ *
+ * <p>{@code threads} потоков вместе делают {@value #UPDATES} циклов "прочитать — изменить телефон — записать"
+ * над случайными пользователями из горячего набора размером {@code hotUsers}: чем он меньше, тем чаще
+ * потоки сталкиваются на одной строке.
+ *
+ * <ul>
+ *   <li>{@code optimistic} — {@link UserDAO#find(Long)} и {@link UserDAO#saveMerging(User, int)} в режиме
+ *       {@link UserDAOBuilder#withOptimisticLocking(boolean)}: блокировок нет, при конфликте запись повторяется.</li>
+ *   <li>{@code pessimistic} — транзакция с {@code SELECT ... FOR UPDATE}: строка заблокирована от чтения
+ *       до коммита, остальные писатели этой строки ждут.</li>
+ * </ul>
+ * Результат — обновления в миллисекунду.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OptimisticLockingBenchmark {
+    private static final int UPDATES = 2_000;
+    private static final int TABLE_SIZE = 10_000;
+    private static final int MAX_ATTEMPTS = 1_000;
+    private static final String SELECT_FOR_UPDATE_SQL = "SELECT username, phone, version FROM users "
+            + "WHERE id = ? FOR UPDATE";
+    private static final String UPDATE_SQL = "UPDATE users SET phone = ?, version = version + 1 WHERE id = ?";
+
+    @Param({"4", "16"})
+    public int threads;
+
+    @Param({"1", "16", "1024"})
+    public int hotUsers;
+
+    @Param({"optimistic", "pessimistic"})
+    public String locking;
+
+    private BenchmarkDatabase database;
+    private ExecutorService executor;
+    private List<Callable<Object>> tasks;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(BenchmarkDatabase.MEM, TABLE_SIZE, threads);
+        try (var conn = database.pool().getConnection(); var stmt = conn.createStatement()) {
+            // при 16 потоках на одной строке очередь за блокировкой бывает длиннее секунды по умолчанию
+            stmt.execute("SET DEFAULT_LOCK_TIMEOUT 10000");
+        }
+        var userDAO = new UserDAOBuilder()
+                .withDataSource(database.pool())
+                .withOptimisticLocking(true)
+                .build();
+        var ids = database.ids();
+        executor = Executors.newFixedThreadPool(threads);
+        tasks = new ArrayList<>(threads);
+        for (var t = 0; t < threads; t++) {
+            var share = UPDATES / threads + (t < UPDATES % threads ? 1 : 0);
+            tasks.add(() -> {
+                var random = ThreadLocalRandom.current();
+                long attempts = 0;
+                for (var i = 0; i < share; i++) {
+                    var id = ids[random.nextInt(hotUsers)];
+                    var phone = Long.toString(random.nextLong());
+                    attempts += "optimistic".equals(locking)
+                            ? updateOptimistic(userDAO, id, phone)
+                            : updatePessimistic(id, phone);
+                }
+                return attempts;
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        executor.shutdownNow();
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public long update() throws InterruptedException, ExecutionException {
+        long attempts = 0;
+        for (var future : executor.invokeAll(tasks)) {
+            attempts += (Long) future.get();
+        }
+        return attempts;
+    }
+
+    private static int updateOptimistic(UserDAO userDAO, long id, String phone) throws SQLException {
+        var user = userDAO.find(id).orElseThrow();
+        user.setPhone(phone);
+        return userDAO.saveMerging(user, MAX_ATTEMPTS);
+    }
+
+    private int updatePessimistic(long id, String phone) throws SQLException {
+        try (var conn = database.pool().getConnection()) {
+            conn.setAutoCommit(false);
+            try (var select = conn.prepareStatement(SELECT_FOR_UPDATE_SQL);
+                 var update = conn.prepareStatement(UPDATE_SQL)) {
+                select.setLong(1, id);
+                try (var rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("User " + id + " not found");
+                    }
+                }
+                update.setString(1, phone);
+                update.setLong(2, id);
+                update.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return 1;
+    }
+}
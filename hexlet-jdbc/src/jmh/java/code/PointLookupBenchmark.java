@@ -0,0 +1,63 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Поиск по первичному ключу при разных размерах таблицы: один ID через {@link UserDAO#find(Long)}
+ * и {@value #MULTI_GET_SIZE} ID через {@link UserDAO#findAll(java.util.Collection)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PointLookupBenchmark {
+    private static final int MULTI_GET_SIZE = 100;
+
+    @Param({BenchmarkDatabase.MEM, BenchmarkDatabase.FILE})
+    public String storage;
+
+    @Param({"1000", "100000", "1000000"})
+    public int tableSize;
+
+    private BenchmarkDatabase database;
+    private UserDAO userDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(storage, tableSize, Runtime.getRuntime().availableProcessors());
+        userDAO = new UserDAO(database.pool());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public Object find() throws SQLException {
+        var ids = database.ids();
+        return userDAO.find(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Object findAll() throws SQLException {
+        var ids = database.ids();
+        var random = ThreadLocalRandom.current();
+        var batch = new ArrayList<Long>(MULTI_GET_SIZE);
+        for (var i = 0; i < MULTI_GET_SIZE; i++) {
+            batch.add(ids[random.nextInt(ids.length)]);
+        }
+        return userDAO.findAll(batch);
+    }
+}
@@ -0,0 +1,90 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Многопоточная смешанная нагрузка на общий {@link UserDAO} поверх {@link ConnectionPool}.
+ *
+ * <ul>
+ *   <li>{@code readHeavy} — три потока читают, один обновляет.</li>
+ *   <li>{@code writeHeavy} — один поток читает, три обновляют.</li>
+ * </ul>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReadWriteMixBenchmark {
+    private static final int ROWS = 100_000;
+
+    @Param({BenchmarkDatabase.MEM, BenchmarkDatabase.FILE})
+    public String storage;
+
+    private BenchmarkDatabase database;
+    private UserDAO userDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(storage, ROWS, 4);
+        userDAO = new UserDAO(database.pool());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public Object readHeavyFind() throws SQLException {
+        return find();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public User readHeavyUpdate() throws SQLException {
+        return update();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public Object writeHeavyFind() throws SQLException {
+        return find();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(3)
+    public User writeHeavyUpdate() throws SQLException {
+        return update();
+    }
+
+    private Object find() throws SQLException {
+        var ids = database.ids();
+        return userDAO.find(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    private User update() throws SQLException {
+        var ids = database.ids();
+        var random = ThreadLocalRandom.current();
+        var user = new User("user_" + random.nextInt(), Long.toString(random.nextLong()));
+        user.setId(ids[random.nextInt(ids.length)]);
+        userDAO.save(user);
+        return user;
+    }
+}
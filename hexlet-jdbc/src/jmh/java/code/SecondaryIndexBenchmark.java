@@ -0,0 +1,69 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Поиск по имени, телефону и префиксу имени без вторичных индексов ({@code scan})
+ * и с индексами из {@link UserSchema#createIndexes(java.sql.Connection)} ({@code index}) при росте таблицы.
+ *
+ * <p>Без индекса время растёт линейно с размером таблицы, с индексом — почти не меняется.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SecondaryIndexBenchmark {
+    private static final int PREFIX_LIMIT = 20;
+
+    @Param({"scan", "index"})
+    public String access;
+
+    @Param({"1000", "100000", "1000000"})
+    public int tableSize;
+
+    private BenchmarkDatabase database;
+    private UserDAO userDAO;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(BenchmarkDatabase.MEM, tableSize, 1);
+        if ("index".equals(access)) {
+            try (var connection = database.pool().getConnection()) {
+                UserSchema.createIndexes(connection);
+            }
+        }
+        userDAO = new UserDAO(database.pool());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public Object findByUsername() throws SQLException {
+        return userDAO.findByUsername("user_" + ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public Object findByPhone() throws SQLException {
+        return userDAO.findByPhone("555" + ThreadLocalRandom.current().nextInt(tableSize));
+    }
+
+    @Benchmark
+    public Object findByUsernamePrefix() throws SQLException {
+        // "user_1234" совпадает с user_1234 и user_12340..user_12349 и т.д.
+        return userDAO.findByUsernamePrefix("user_" + ThreadLocalRandom.current().nextInt(tableSize / 10 + 1),
+                PREFIX_LIMIT);
+    }
+}
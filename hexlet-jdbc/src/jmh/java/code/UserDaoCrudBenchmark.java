@@ -0,0 +1,78 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Однострочные операции {@link UserDAO}: вставка, поиск, обновление, вставка с удалением.
+ *
+ * <p>DAO работает через одно соединение, как в {@link Application2}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserDaoCrudBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({BenchmarkDatabase.MEM, BenchmarkDatabase.FILE})
+    public String storage;
+
+    private BenchmarkDatabase database;
+    private Connection connection;
+    private UserDAO userDAO;
+    private User existing;
+    private long counter;
+
+    @Setup
+    public void setUp() throws SQLException {
+        database = BenchmarkDatabase.open(storage, ROWS, 1);
+        connection = database.pool().getConnection();
+        userDAO = new UserDAO(connection);
+        existing = userDAO.find(database.ids()[0]).orElseThrow();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        database.close();
+    }
+
+    @Benchmark
+    public User insert() throws SQLException {
+        var user = new User("bench", "000");
+        userDAO.save(user);
+        return user;
+    }
+
+    @Benchmark
+    public Object find() throws SQLException {
+        var ids = database.ids();
+        return userDAO.find(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public User update() throws SQLException {
+        existing.setPhone(Long.toString(counter++));
+        userDAO.save(existing);
+        return existing;
+    }
+
+    @Benchmark
+    public User insertAndDelete() throws SQLException {
+        var user = new User("bench", "000");
+        userDAO.save(user);
+        userDAO.delete(user);
+        return user;
+    }
+}
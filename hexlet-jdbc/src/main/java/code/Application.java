@@ -34,6 +34,8 @@ public class Application {
 
             try (var stmt = conn.createStatement()) {
                 stmt.execute(createSql);
+                // Без индекса DELETE и ORDER BY по username ниже читают всю таблицу
+                stmt.execute("CREATE INDEX users_username_id ON users (username, id)");
             }
 
             // Вставка данных
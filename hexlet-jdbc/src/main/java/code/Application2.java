@@ -1,6 +1,5 @@
 package code;
 
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Optional;
 
@@ -22,27 +21,25 @@ import java.util.Optional;
  *   <li>Удаление и проверка отсутствия.</li>
  * </ol>
  *
+ * <h2>Соединения:</h2>
+ * Соединения берутся из {@link ConnectionPool}: DAO получает пул как {@link javax.sql.DataSource}
+ * и берёт соединение на каждую операцию, поэтому его можно делить между потоками.
+ *
  * <h2>Безопасность:</h2>
  * Можно использовать {@link Optional} для избежания NullPointerException.
  */
 public class Application2 {
     public static void main(String[] args) throws SQLException {
-        try (var connection = DriverManager.getConnection("jdbc:h2:mem:hexlet_test")) {
+        try (var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:hexlet_test;DB_CLOSE_DELAY=-1")
+                .withMaxSize(4).build()) {
 
-            // Создаём таблицу (если нужно)
-            var createTableSql = """
-                CREATE TABLE users (
-                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                    username VARCHAR(255),
-                    phone VARCHAR(255)
-                )
-                """;
-            try (var stmt = connection.createStatement()) {
-                stmt.execute(createTableSql);
+            // Создаём таблицу и индексы (если нужно)
+            try (var connection = pool.getConnection()) {
+                UserSchema.create(connection);
             }
 
             // Создаём DAO и работаем с ним
-            var userDAO = new UserDAO(connection);
+            var userDAO = new UserDAO(pool);
 
             // Создаём и сохраняем пользователя
             var user = new User("tommy", "123456789");
@@ -66,10 +63,18 @@ public class Application2 {
                 System.out.println("Found: " + foundUser1.get().getName());
             }
 
+            // Повторное сохранение без изменений — DAO пропускает запись
+            userDAO.save(user);
+            System.out.println("Writes avoided: " + userDAO.getWritesAvoided());
+
             // Проверяем, есть ли пользователь (пользователь есть, пока что не удалён)
             var maybeDeleted1 = userDAO.find(user.getId());
             System.out.println("After deletion: " + (maybeDeleted1.isPresent() ? "yes": "no"));
 
+            // Поиск по имени и по префиксу имени идёт по индексу users_username_id
+            System.out.println("By username: " + userDAO.findByUsername("tommy_updated").size());
+            System.out.println("By prefix: " + userDAO.findByUsernamePrefix("tom", 10).size());
+
             // Удаляем пользователя
             userDAO.delete(user);
             System.out.println("User deleted");
@@ -77,6 +82,10 @@ public class Application2 {
             // Проверяем, что его больше нет (пользователь)
             var maybeDeleted = userDAO.find(user.getId());
             System.out.println("After deletion: " + (maybeDeleted.isPresent() ? "yes": "no"));
+
+            System.out.println("Pool: " + pool.getStats());
+            System.out.println("Statement cache: " + userDAO.getStatementCacheStats());
+            userDAO.getMetrics().snapshot().values().forEach(System.out::println);
         }
     }
 }
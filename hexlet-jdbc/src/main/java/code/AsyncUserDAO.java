@@ -0,0 +1,241 @@
+package code;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный фасад над {@link UserRepository}: операции возвращают {@link CompletableFuture}.
+ *
+ * <p>Каждая операция выполняется в отдельном виртуальном потоке: блокирующий вызов JDBC усыпляет
+ * только виртуальный поток, а поток-носитель освобождается для других задач. Поэтому можно держать
+ * тысячи одновременных запросов без пула из тысяч платформенных потоков.
+ *
+ * <h2>Ограничение соединений:</h2>
+ * Число операций, одновременно работающих с БД, ограничено семафором ({@code maxConcurrentConnections}).
+ * Остальные виртуальные потоки ждут на семафоре, не занимая ни соединение, ни поток-носитель.
+ * Лимит стоит выбирать не больше размера {@link ConnectionPool}: тогда запросы не упираются в таймаут
+ * ожидания пула, а драйвер, который держит монитор во время запроса, закрепляет за собой
+ * не больше {@code maxConcurrentConnections} потоков-носителей.
+ *
+ * <h2>Ошибки:</h2>
+ * {@link SQLException} не оборачивается: future завершается с ним, а {@link CompletableFuture#join()}
+ * бросает {@link java.util.concurrent.CompletionException} с ним в причине. Так же завершается future
+ * при любом другом исключении или {@link Error} операции — вызывающий код не зависает на {@code join()}.
+ *
+ * <h2>Версия Java:</h2>
+ * Виртуальные потоки появились в Java 21, а проект собирается и на Java 17, поэтому исполнитель ищется
+ * через reflection. На JVM без виртуальных потоков {@link #AsyncUserDAO(UserRepository, int)} использует
+ * <b>ограниченный</b> пул из {@code maxConcurrentConnections} платформенных потоков (см.
+ * {@link #isVirtualThreadsSupported()}): ожидающие операции лежат в очереди пула, а не держат по потоку.
+ * Результаты те же, но выигрыша виртуальных потоков нет — тысячи операций просто ждут своей очереди.
+ *
+ * <pre>{@code
+ * try (var users = new AsyncUserDAO(new UserDAO(pool), 16)) {
+ *     users.find(42L).thenAccept(user -> user.ifPresent(System.out::println));
+ * }
+ * }</pre>
+ */
+public class AsyncUserDAO implements AutoCloseable {
+    /**
+     * Сколько {@link #close()} ждёт запущенные операции, прежде чем прервать их.
+     */
+    public static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final boolean VIRTUAL_THREADS = probeVirtualThreads();
+
+    private final UserRepository repository;
+    private final ExecutorService executor;
+    private final Semaphore connections;
+
+    /**
+     * Создаёт фасад на виртуальных потоках (на Java до 21 — на ограниченном пуле платформенных потоков).
+     *
+     * @param repository               хранилище, например {@link UserDAO} над {@link ConnectionPool} (не null)
+     * @param maxConcurrentConnections сколько операций одновременно обращаются к БД (больше нуля)
+     */
+    public AsyncUserDAO(UserRepository repository, int maxConcurrentConnections) {
+        this(repository, newVirtualThreadExecutor(maxConcurrentConnections), maxConcurrentConnections);
+    }
+
+    /**
+     * Создаёт фасад на заданном исполнителе, например на пуле платформенных потоков для сравнения.
+     *
+     * @param repository               хранилище (не null)
+     * @param executor                 исполнитель операций; закрывается вместе с фасадом
+     * @param maxConcurrentConnections сколько операций одновременно обращаются к БД (больше нуля)
+     */
+    public AsyncUserDAO(UserRepository repository, ExecutorService executor, int maxConcurrentConnections) {
+        if (maxConcurrentConnections <= 0) {
+            throw new IllegalArgumentException("Max concurrent connections must be positive: "
+                    + maxConcurrentConnections);
+        }
+        this.repository = Objects.requireNonNull(repository, "Repository must not be null");
+        this.executor = Objects.requireNonNull(executor, "Executor must not be null");
+        this.connections = new Semaphore(maxConcurrentConnections, true);
+    }
+
+    /**
+     * @return {@code true}, если JVM поддерживает виртуальные потоки
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * Асинхронно находит пользователя по ID.
+     *
+     * @param id идентификатор пользователя
+     * @return future с найденным пользователем или пустым Optional
+     */
+    public CompletableFuture<Optional<User>> find(Long id) {
+        return submit(() -> repository.find(id));
+    }
+
+    /**
+     * Асинхронно сохраняет пользователя (см. {@link UserRepository#save(User)}).
+     *
+     * @param user сохраняемый пользователь (не null)
+     * @return future с тем же пользователем; после вставки у него проставлен ID
+     */
+    public CompletableFuture<User> save(User user) {
+        return submit(() -> {
+            repository.save(user);
+            return user;
+        });
+    }
+
+    /**
+     * Асинхронно удаляет пользователя.
+     *
+     * @param user удаляемый пользователь (должен иметь ID)
+     * @return future, завершающийся после удаления
+     */
+    public CompletableFuture<Void> delete(User user) {
+        return submit(() -> {
+            repository.delete(user);
+            return null;
+        });
+    }
+
+    /**
+     * @return сколько операций сейчас ждут свободного соединения
+     */
+    public int getQueuedOperations() {
+        return connections.getQueueLength();
+    }
+
+    /**
+     * Перестаёт принимать операции и ждёт завершения уже принятых, но не дольше {@link #CLOSE_TIMEOUT}.
+     * После этого (или если ожидание прервано) запущенные операции прерываются, а future ещё не начатых
+     * завершаются с {@link RejectedExecutionException}. Операция, которая не реагирует на прерывание
+     * (например, зависший вызов драйвера), завершит свою future сама, но {@code close()} её уже не ждёт.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+                cancelRemaining();
+            }
+        } catch (InterruptedException e) {
+            cancelRemaining();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cancelRemaining() {
+        for (var task : executor.shutdownNow()) {
+            if (task instanceof Operation<?> operation) {
+                operation.future.completeExceptionally(new RejectedExecutionException("AsyncUserDAO is closed"));
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(SqlCall<T> call) {
+        var operation = new Operation<>(call);
+        try {
+            executor.execute(operation);
+        } catch (RejectedExecutionException e) {
+            operation.future.completeExceptionally(e);
+        }
+        return operation.future;
+    }
+
+    /**
+     * Исполнитель "поток на задачу" на виртуальных потоках (Java 21+), иначе пул из {@code maxConcurrentConnections}
+     * платформенных daemon-потоков: больше одновременно работающих операций семафор всё равно не пропустит.
+     */
+    private static ExecutorService newVirtualThreadExecutor(int maxConcurrentConnections) {
+        if (maxConcurrentConnections <= 0) {
+            throw new IllegalArgumentException("Max concurrent connections must be positive: "
+                    + maxConcurrentConnections);
+        }
+        if (VIRTUAL_THREADS) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual thread executor is not available", e);
+            }
+        }
+        return Executors.newFixedThreadPool(maxConcurrentConnections, r -> {
+            var thread = new Thread(r, "async-user-dao");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static boolean probeVirtualThreads() {
+        try {
+            var executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            executor.shutdown();
+            return true;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Задача исполнителя: выполняет операцию под семафором и завершает её future при любом исходе.
+     */
+    private final class Operation<T> implements Runnable {
+        private final SqlCall<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Operation(SqlCall<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                connections.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                connections.release();
+            }
+        }
+    }
+
+    /**
+     * Операция хранилища, которая может бросить {@link SQLException}.
+     */
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+}
@@ -0,0 +1,55 @@
+package code;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Сравнение построчной вставки {@link UserDAO#save(User)} и пакетной {@link UserDAO#saveAll(java.util.Collection, int)}.
+ *
+ * <p>Вставляет одинаковое количество пользователей обоими способами и печатает скорость в строках в секунду.
+ * Отдельно измеряется пакетная вставка с ID из {@link SequenceIdAllocator}.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_batch}
+ */
+public class BatchInsertDemo {
+    private static final int ROWS = 100_000;
+
+    public static void main(String[] args) throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:h2:mem:hexlet_batch")) {
+            UserSchema.createTable(connection);
+
+            var userDAO = new UserDAO(connection);
+
+            // Построчно: один INSERT и один getGeneratedKeys() на пользователя
+            var start = System.nanoTime();
+            for (var i = 0; i < ROWS; i++) {
+                userDAO.save(new User("single_" + i, "555" + i));
+            }
+            var elapsed = System.nanoTime() - start;
+            System.out.printf("save():    %s%n", new BatchStats(ROWS, 0, 0, elapsed));
+
+            // Пакетами
+            var users = new ArrayList<User>(ROWS);
+            for (var i = 0; i < ROWS; i++) {
+                users.add(new User("batch_" + i, "777" + i));
+            }
+            System.out.printf("saveAll(): %s%n", userDAO.saveAll(users));
+            System.out.println("Last generated id: " + users.get(ROWS - 1).getId());
+
+            // Пакетами с ID из последовательности (hi/lo): без getGeneratedKeys()
+            SequenceIdAllocator.createSequence(connection, "users_id_seq", 1_000);
+            var allocatingDAO = new UserDAOBuilder()
+                    .withConnection(connection)
+                    .withIdAllocator(new SequenceIdAllocator("users_id_seq", 1_000))
+                    .build();
+            users.clear();
+            for (var i = 0; i < ROWS; i++) {
+                users.add(new User("hilo_" + i, "999" + i));
+            }
+            System.out.printf("saveAll() with hi/lo ids: %s%n", allocatingDAO.saveAll(users));
+            System.out.println("Last allocated id: " + users.get(ROWS - 1).getId());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package code;
+
+/**
+ * Итоги пакетной операции {@link UserDAO#saveAll(java.util.Collection, int)}.
+ *
+ * <p>Позволяет сравнить пропускную способность пакетного пути с построчным {@link UserDAO#save(User)}.
+ *
+ * @param inserted     количество вставленных строк
+ * @param updated      количество обновлённых строк
+ * @param skipped      количество пользователей, не записанных, потому что они не изменились
+ * @param elapsedNanos затраченное время в наносекундах
+ */
+public record BatchStats(int inserted, int updated, int skipped, long elapsedNanos) {
+
+    /**
+     * @return общее количество обработанных строк
+     */
+    public int rows() {
+        return inserted + updated;
+    }
+
+    /**
+     * @return скорость обработки в строках в секунду
+     */
+    public double rowsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return rows() * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows (%d inserted, %d updated, %d unchanged skipped) in %.1f ms, %.0f rows/sec",
+                rows(), inserted, updated, skipped, elapsedNanos / 1_000_000.0, rowsPerSecond());
+    }
+}
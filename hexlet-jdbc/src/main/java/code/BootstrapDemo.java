@@ -0,0 +1,73 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Время запуска БД с {@value #USERS} начальными пользователями: засев при каждом старте
+ * против восстановления снимка через {@link DatabaseBootstrap}.
+ *
+ * <p>Первый запуск каждого способа создаёт снимок ({@code SEEDED}), следующие только восстанавливают его
+ * ({@code SNAPSHOT}). Снимки лежат во временном каталоге и удаляются в конце.
+ *
+ * <h2>Используемые БД:</h2>
+ * H2 в memory-режиме ({@code jdbc:h2:mem:hexlet_boot_*}), файловая H2 во временном каталоге
+ * и H2 в файловой системе в памяти ({@code jdbc:h2:memFS:/hexlet-bootstrap/hexlet_boot_memory_*}).
+ */
+public class BootstrapDemo {
+    private static final int USERS = 200_000;
+    private static final int RESTARTS = 3;
+
+    public static void main(String[] args) throws SQLException, IOException {
+        var directory = Files.createTempDirectory("hexlet-bootstrap");
+        try {
+            var scriptBootstrap = new DatabaseBootstrap(directory.resolve("users.zip"));
+            for (var i = 0; i < RESTARTS; i++) {
+                try (var conn = DriverManager.getConnection("jdbc:h2:mem:hexlet_boot_" + i)) {
+                    System.out.println("SQL script snapshot: " + scriptBootstrap.bootstrap(conn, BootstrapDemo::seed));
+                }
+            }
+
+            var fileBootstrap = new DatabaseBootstrap(directory.resolve("users.mv.db"));
+            for (var i = 0; i < RESTARTS; i++) {
+                // каждый запуск — чистый рабочий каталог, как у нового тестового окружения
+                var database = directory.resolve("run_" + i).resolve("users");
+                System.out.println("MVStore file copy:   " + fileBootstrap.bootstrapFile(database, BootstrapDemo::seed));
+                try (var conn = DriverManager.getConnection(DatabaseBootstrap.fileUrl(database));
+                     var stmt = conn.createStatement()) {
+                    stmt.execute("SHUTDOWN");
+                }
+            }
+
+            var memoryBootstrap = new DatabaseBootstrap(directory.resolve("memory").resolve("users.mv.db"));
+            for (var i = 0; i < RESTARTS; i++) {
+                var name = "hexlet_boot_memory_" + i;
+                System.out.println("MVStore in memory:   " + memoryBootstrap.bootstrapMemory(name, BootstrapDemo::seed));
+                try (var conn = DriverManager.getConnection(DatabaseBootstrap.memoryUrl(name));
+                     var stmt = conn.createStatement()) {
+                    stmt.execute("DROP ALL OBJECTS DELETE FILES");
+                }
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Засев, который раньше выполнялся при каждом старте.
+     */
+    private static void seed(Connection conn) throws SQLException {
+        var userDAO = new UserDAO(conn);
+        for (var i = 0; i < USERS; i++) {
+            userDAO.save(new User("seed_" + i, "555" + i));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package code;
+
+/**
+ * Итоги запуска БД через {@link DatabaseBootstrap}.
+ *
+ * @param source       откуда взялись данные
+ * @param rows         количество строк в {@code users} после запуска
+ * @param elapsedNanos время запуска в наносекундах
+ */
+public record BootstrapStats(Source source, long rows, long elapsedNanos) {
+
+    /**
+     * Источник данных при запуске.
+     */
+    public enum Source {
+        /** Таблица уже была в БД, восстанавливать ничего не пришлось. */
+        EXISTING,
+        /** Данные восстановлены из снимка. */
+        SNAPSHOT,
+        /** Снимка не было: схема создана, данные засеяны, снимок записан для следующих запусков. */
+        SEEDED
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s, %d rows in %.1f ms", source, rows, elapsedNanos / 1_000_000.0);
+    }
+}
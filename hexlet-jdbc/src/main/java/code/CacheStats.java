@@ -0,0 +1,32 @@
+package code;
+
+/**
+ * Снимок статистики {@link CachingUserRepository}.
+ *
+ * @param size           текущее количество записей в кэше
+ * @param hits           сколько раз пользователь был отдан из кэша
+ * @param misses         сколько раз пришлось идти в БД
+ * @param evictions      сколько записей вытеснено из-за ограничения размера
+ * @param expirations    сколько записей удалено из-за истечения TTL
+ * @param invalidations  сколько записей сброшено при сохранении или удалении
+ * @param loads          сколько загрузок из БД выполнено
+ * @param totalLoadNanos суммарное время загрузок из БД в наносекундах
+ */
+public record CacheStats(long size, long hits, long misses, long evictions, long expirations,
+                         long invalidations, long loads, long totalLoadNanos) {
+
+    /**
+     * @return доля попаданий в кэш от 0 до 1
+     */
+    public double hitRatio() {
+        var total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return среднее время загрузки из БД в микросекундах
+     */
+    public double averageLoadMicros() {
+        return loads == 0 ? 0 : totalLoadNanos / 1_000.0 / loads;
+    }
+}
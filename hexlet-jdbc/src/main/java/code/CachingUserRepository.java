@@ -0,0 +1,253 @@
+package code;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Декоратор над {@link UserRepository}, который кэширует найденных пользователей в памяти (read-through).
+ *
+ * <p>{@link #find(Long)} сначала ищет пользователя в кэше и идёт в БД только при промахе.
+ * {@link #save(User)} и {@link #delete(User)} сначала пишут в БД, а затем сбрасывают запись в кэше,
+ * поэтому следующее чтение получит актуальные данные.
+ *
+ * <h2>Вытеснение:</h2>
+ * <ul>
+ *   <li>По размеру — вытесняется давно не использованная запись (LRU).</li>
+ *   <li>По времени — запись старше {@code ttl} считается устаревшей и загружается заново.</li>
+ * </ul>
+ *
+ * <h2>Многопоточность:</h2>
+ * Кэш разбит на сегменты со своими блокировками (lock striping), поэтому потоки, читающие разные ID,
+ * почти не мешают друг другу. Чтобы загрузка из БД, начатая до записи, не положила в кэш старое значение,
+ * у каждого сегмента есть счётчик поколений: загруженное значение кладётся в кэш, только если за время
+ * загрузки в сегменте не было ни одного сброса.
+ *
+ * <h2>Замечание:</h2>
+ * Кэш хранит и отдаёт копии объектов {@link User}, чтобы изменения объекта в клиентском коде
+ * без вызова {@link #save(User)} не попадали в кэш.
+ * Отсутствующие пользователи не кэшируются.
+ */
+public class CachingUserRepository implements UserRepository {
+    private static final int MAX_SEGMENTS = 16;
+
+    private final UserRepository delegate;
+    private final long ttlNanos;
+    private final Segment[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param delegate хранилище, к которому идут запросы при промахе (не null)
+     * @param maxSize  максимальное количество пользователей в кэше (больше нуля)
+     * @param ttl      время жизни записи в кэше (положительное)
+     */
+    public CachingUserRepository(UserRepository delegate, int maxSize, Duration ttl) {
+        this.delegate = Objects.requireNonNull(delegate, "Delegate must not be null");
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Cache TTL must be positive: " + ttl);
+        }
+        this.ttlNanos = ttl.toNanos();
+
+        var segmentCount = Math.min(MAX_SEGMENTS, maxSize);
+        var segmentCapacity = (maxSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (var i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    @Override
+    public Optional<User> find(Long id) throws SQLException {
+        var segment = segmentFor(id);
+        var cached = segment.get(id, System.nanoTime());
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(copy(cached));
+        }
+        misses.increment();
+
+        var generation = segment.generation();
+        var start = System.nanoTime();
+        var loaded = delegate.find(id);
+        var now = System.nanoTime();
+        loads.increment();
+        loadNanos.add(now - start);
+
+        loaded.ifPresent(user -> segment.putIfCurrent(id, copy(user), generation, now));
+        return loaded;
+    }
+
+    /**
+     * Находит пользователей по коллекции ID: найденные в кэше отдаются из памяти,
+     * остальные загружаются одним вызовом {@link UserRepository#findAll(Collection)}.
+     */
+    @Override
+    public Map<Long, User> findAll(Collection<Long> ids) throws SQLException {
+        var result = new HashMap<Long, User>();
+        var missing = new ArrayList<Long>();
+        var generations = new HashMap<Long, Long>();
+        var now = System.nanoTime();
+        for (var id : ids) {
+            var segment = segmentFor(id);
+            var cached = segment.get(id, now);
+            if (cached != null) {
+                hits.increment();
+                result.put(id, copy(cached));
+            } else {
+                misses.increment();
+                missing.add(id);
+                generations.put(id, segment.generation());
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        var start = System.nanoTime();
+        var loaded = delegate.findAll(missing);
+        now = System.nanoTime();
+        loads.increment();
+        loadNanos.add(now - start);
+
+        for (var entry : loaded.entrySet()) {
+            var id = entry.getKey();
+            segmentFor(id).putIfCurrent(id, copy(entry.getValue()), generations.get(id), now);
+            result.put(id, entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void save(User user) throws SQLException {
+        delegate.save(user);
+        invalidate(user.getId());
+    }
+
+    @Override
+    public void delete(User user) throws SQLException {
+        delegate.delete(user);
+        invalidate(user.getId());
+    }
+
+    /**
+     * Сбрасывает запись о пользователе, например после изменения таблицы в обход этого кэша.
+     *
+     * @param id идентификатор пользователя
+     */
+    public void invalidate(Long id) {
+        if (segmentFor(id).invalidate(id)) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Сбрасывает весь кэш.
+     */
+    public void invalidateAll() {
+        for (var segment : segments) {
+            invalidations.add(segment.clear());
+        }
+    }
+
+    /**
+     * @return текущая статистика кэша
+     */
+    public CacheStats getStats() {
+        long size = 0;
+        for (var segment : segments) {
+            size += segment.size();
+        }
+        return new CacheStats(size, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(),
+                invalidations.sum(), loads.sum(), loadNanos.sum());
+    }
+
+    private Segment segmentFor(Long id) {
+        var hash = Objects.requireNonNull(id, "Id must not be null").hashCode();
+        hash ^= hash >>> 16;
+        return segments[Math.floorMod(hash, segments.length)];
+    }
+
+    private static User copy(User user) {
+        return user.copy();
+    }
+
+    private record Entry(User user, long expiresAtNanos) {
+    }
+
+    /**
+     * Часть кэша со своей блокировкой: LRU-словарь и счётчик поколений.
+     */
+    private final class Segment {
+        private final LinkedHashMap<Long, Entry> entries;
+        private long generation;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized User get(Long id, long now) {
+            var entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAtNanos() >= 0) {
+                entries.remove(id);
+                expirations.increment();
+                return null;
+            }
+            return entry.user();
+        }
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void putIfCurrent(Long id, User user, long expectedGeneration, long now) {
+            if (generation == expectedGeneration) {
+                entries.put(id, new Entry(user, now + ttlNanos));
+            }
+        }
+
+        synchronized boolean invalidate(Long id) {
+            generation++;
+            return entries.remove(id) != null;
+        }
+
+        synchronized int clear() {
+            generation++;
+            var size = entries.size();
+            entries.clear();
+            return size;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
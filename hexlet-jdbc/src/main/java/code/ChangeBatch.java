@@ -0,0 +1,19 @@
+package code;
+
+import java.util.List;
+
+/**
+ * Пакет изменений из {@link ChangeFeed#poll(long, int)}.
+ *
+ * @param changes   изменения в порядке {@link UserChange#seq()}
+ * @param watermark водяная метка для следующего вызова; её нужно сохранить после обработки пакета
+ */
+public record ChangeBatch(List<UserChange> changes, long watermark) {
+
+    /**
+     * @return {@code true}, если новых изменений пока нет
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
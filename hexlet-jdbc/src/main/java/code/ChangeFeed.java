@@ -0,0 +1,230 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+
+/**
+ * Журнал изменений таблицы {@code users} (change data capture) для инкрементальной синхронизации.
+ *
+ * <p>Поисковый индекс или кэш вместо полного перечитывания таблицы хранит водяную метку — номер последнего
+ * обработанного изменения — и забирает только то, что изменилось после неё:
+ *
+ * <pre>{@code
+ * var feed = new ChangeFeed(pool);
+ * var batch = feed.poll(watermark, 500);
+ * batch.changes().forEach(index::apply);
+ * watermark = batch.watermark();
+ * }</pre>
+ *
+ * <h2>Как устроено:</h2>
+ * {@link #install(Connection)} создаёт таблицу {@code users_changes} и триггер {@link UserChangeTrigger},
+ * который в той же транзакции дописывает в неё каждую вставку, обновление и удаление (tombstone).
+ * Номер изменения ({@code seq}) выдаёт identity-колонка.
+ *
+ * <h2>Пропуски номеров:</h2>
+ * Номер выдаётся при записи, а виден читателю только после коммита. Если транзакция с меньшим номером
+ * ещё не закоммичена, а с большим уже да, в журнале временно виден пропуск. Чтобы не потерять такое изменение,
+ * {@link #poll(long, int)} останавливается перед пропуском и ждёт его заполнения не дольше {@code gapTimeout}.
+ * Пропуски, оставшиеся дольше (откат транзакции, перезапуск БД, удалённые {@link #purge(long)} записи),
+ * считаются постоянными и пропускаются.
+ *
+ * <p>Время ожидания пропуска общее для всех потребителей одного {@code ChangeFeed}: пропуск — свойство журнала,
+ * а не потребителя. Отметку снимает только тот вызов {@code poll}, который сам прошёл пропуск, поэтому потребитель
+ * с высокой водяной меткой не сбрасывает таймер тому, кто ещё ждёт ниже. Отметки ниже {@link #purge(long)}
+ * удаляются вместе с журналом.
+ */
+public class ChangeFeed {
+    /**
+     * Сколько по умолчанию ждать заполнения пропуска в номерах изменений.
+     */
+    public static final Duration DEFAULT_GAP_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS users_changes (
+            seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            user_id BIGINT NOT NULL,
+            op CHAR(1) NOT NULL,
+            username VARCHAR(255),
+            phone VARCHAR(255),
+            changed_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP NOT NULL
+        )
+        """;
+    private static final String CREATE_TRIGGER_SQL = "CREATE TRIGGER IF NOT EXISTS users_change_feed "
+            + "AFTER INSERT, UPDATE, DELETE ON users FOR EACH ROW CALL '" + UserChangeTrigger.class.getName() + "'";
+    private static final String POLL_SQL = "SELECT seq, user_id, op, username, phone, changed_at FROM users_changes "
+            + "WHERE seq > ? ORDER BY seq LIMIT ?";
+    private static final String PURGE_SQL = "DELETE FROM users_changes WHERE seq <= ?";
+
+    private final DataSource dataSource;
+    private final long gapTimeoutNanos;
+    private final ConcurrentSkipListMap<Long, Long> gapsFirstSeen = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param dataSource источник соединений (не null)
+     */
+    public ChangeFeed(DataSource dataSource) {
+        this(dataSource, DEFAULT_GAP_TIMEOUT);
+    }
+
+    /**
+     * @param dataSource источник соединений (не null)
+     * @param gapTimeout сколько ждать заполнения пропуска в номерах, прежде чем считать его постоянным
+     */
+    public ChangeFeed(DataSource dataSource, Duration gapTimeout) {
+        this.dataSource = Objects.requireNonNull(dataSource, "DataSource must not be null");
+        this.gapTimeoutNanos = gapTimeout.toNanos();
+    }
+
+    /**
+     * Вид изменения.
+     */
+    public enum Operation {
+        INSERT("I"),
+        UPDATE("U"),
+        DELETE("D");
+
+        private final String code;
+
+        Operation(String code) {
+            this.code = code;
+        }
+
+        /**
+         * @return однобуквенный код в колонке {@code users_changes.op}
+         */
+        public String code() {
+            return code;
+        }
+
+        static Operation fromCode(String code) {
+            for (var operation : values()) {
+                if (operation.code.equals(code)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown change operation: " + code);
+        }
+    }
+
+    /**
+     * Создаёт журнал и триггер, если их ещё нет. Изменения, сделанные до установки, в журнал не попадают.
+     *
+     * @param conn соединение с БД, в которой уже есть таблица {@code users}
+     * @throws SQLException при ошибках работы с БД
+     */
+    public static void install(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+            stmt.execute(CREATE_TRIGGER_SQL);
+        }
+    }
+
+    /**
+     * Возвращает следующие изменения после водяной метки.
+     *
+     * @param watermark номер последнего обработанного изменения; 0 — читать с начала журнала
+     * @param limit     максимальное количество изменений в пакете (больше нуля)
+     * @return пакет изменений и новая водяная метка (равна старой, если изменений нет)
+     * @throws SQLException при ошибках работы с БД
+     */
+    public ChangeBatch poll(long watermark, int limit) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        var changes = new ArrayList<UserChange>();
+        var next = watermark;
+        try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(POLL_SQL)) {
+            stmt.setLong(1, watermark);
+            stmt.setInt(2, limit);
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    var seq = rs.getLong(1);
+                    if (seq != next + 1 && !gapExpired(next + 1)) {
+                        break;
+                    }
+                    changes.add(new UserChange(seq, rs.getLong(2), Operation.fromCode(rs.getString(3)),
+                            rs.getString(4), rs.getString(5), rs.getObject(6, OffsetDateTime.class).toInstant()));
+                    next = seq;
+                }
+            }
+        }
+        // только пропуски, пройденные этим вызовом: ниже его метки другие потребители могут ещё ждать
+        gapsFirstSeen.subMap(watermark, false, next, true).clear();
+        return new ChangeBatch(changes, next);
+    }
+
+    /**
+     * Лениво читает все изменения после водяной метки пакетами по {@code batchSize}, пока не дочитает
+     * до текущего конца журнала (или до незаполненного пропуска).
+     *
+     * <p>Ошибки БД во время чтения бросаются как {@link DataAccessException}.
+     *
+     * @param watermark номер последнего обработанного изменения
+     * @param batchSize сколько изменений запрашивать за раз (больше нуля)
+     * @return поток изменений в порядке {@link UserChange#seq()}
+     */
+    public Stream<UserChange> stream(long watermark, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        var batches = new Spliterators.AbstractSpliterator<ChangeBatch>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private long position = watermark;
+            private boolean exhausted;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super ChangeBatch> action) {
+                if (exhausted) {
+                    return false;
+                }
+                try {
+                    var batch = poll(position, batchSize);
+                    position = batch.watermark();
+                    // неполный пакет — дочитали до конца журнала или до пропуска
+                    exhausted = batch.changes().size() < batchSize;
+                    action.accept(batch);
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("Failed to read change feed", e);
+                }
+            }
+        };
+        return StreamSupport.stream(batches, false).flatMap(batch -> batch.changes().stream());
+    }
+
+    /**
+     * Удаляет из журнала изменения, которые обработали все потребители.
+     *
+     * @param upTo наименьшая из водяных меток потребителей
+     * @return количество удалённых записей
+     * @throws SQLException при ошибках работы с БД
+     */
+    public int purge(long upTo) throws SQLException {
+        try (var conn = dataSource.getConnection(); var stmt = conn.prepareStatement(PURGE_SQL)) {
+            stmt.setLong(1, upTo);
+            var purged = stmt.executeUpdate();
+            gapsFirstSeen.headMap(upTo, true).clear();
+            return purged;
+        }
+    }
+
+    /**
+     * Отмечает пропуск, начинающийся с {@code gapStart}, и проверяет, не ждём ли его уже дольше таймаута.
+     */
+    private boolean gapExpired(long gapStart) {
+        var now = System.nanoTime();
+        var firstSeen = gapsFirstSeen.computeIfAbsent(gapStart, start -> now);
+        return now - firstSeen >= gapTimeoutNanos;
+    }
+}
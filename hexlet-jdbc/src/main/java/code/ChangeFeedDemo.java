@@ -0,0 +1,80 @@
+package code;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Инкрементальная синхронизация копии таблицы {@code users} через {@link ChangeFeed}.
+ *
+ * <p>Копия (здесь — {@link HashMap}, в реальности поисковый индекс или кэш) сначала догоняет журнал,
+ * затем получает только изменения, сделанные после её водяной метки: обновления через {@link UserDAO},
+ * удаление и запись сырым SQL в обход DAO — её тоже ловит триггер.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_changes}
+ */
+public class ChangeFeedDemo {
+    private static final int USERS = 10_000;
+
+    public static void main(String[] args) throws SQLException {
+        var pool = new ConnectionPoolBuilder()
+                .withUrl("jdbc:h2:mem:hexlet_changes;DB_CLOSE_DELAY=-1")
+                .withMaxSize(4)
+                .build();
+        try (pool) {
+            try (var conn = pool.getConnection()) {
+                UserSchema.create(conn);
+                ChangeFeed.install(conn);
+            }
+
+            var userDAO = new UserDAOBuilder().withDataSource(pool).build();
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User("user_" + i, "555" + i));
+            }
+            userDAO.saveAll(users);
+
+            var feed = new ChangeFeed(pool);
+            var replica = new HashMap<Long, String>();
+            var watermark = 0L;
+
+            var start = System.nanoTime();
+            var batch = feed.poll(watermark, USERS);
+            batch.changes().forEach(change -> apply(replica, change));
+            watermark = batch.watermark();
+            System.out.printf("Initial sync: %d changes in %.1f ms, watermark %d%n",
+                    batch.changes().size(), (System.nanoTime() - start) / 1_000_000.0, watermark);
+
+            // несколько точечных изменений после синхронизации
+            var renamed = users.get(0);
+            renamed.setName("renamed_0");
+            userDAO.save(renamed);
+            userDAO.delete(users.get(1));
+            try (var conn = pool.getConnection(); var stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE users SET phone = '000' WHERE id = " + users.get(2).getId());
+            }
+
+            start = System.nanoTime();
+            var incremental = feed.stream(watermark, 100).toList();
+            for (var change : incremental) {
+                System.out.println("  " + change);
+                apply(replica, change);
+                watermark = change.seq();
+            }
+            System.out.printf("Incremental sync: %d changes in %.1f ms, watermark %d, replica size %d%n",
+                    incremental.size(), (System.nanoTime() - start) / 1_000_000.0, watermark, replica.size());
+
+            System.out.println("Purged changes: " + feed.purge(watermark));
+        }
+    }
+
+    private static void apply(HashMap<Long, String> replica, UserChange change) {
+        if (change.isTombstone()) {
+            replica.remove(change.userId());
+        } else {
+            replica.put(change.userId(), change.username() + " / " + change.phone());
+        }
+    }
+}
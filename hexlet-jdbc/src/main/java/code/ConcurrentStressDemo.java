@@ -0,0 +1,118 @@
+package code;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.sql.DataSource;
+
+/**
+ * Нагрузочная проверка одного {@link UserDAO}, разделённого между потоками.
+ *
+ * <p>Каждый поток в цикле вставляет, читает, обновляет и удаляет своих пользователей и проверяет,
+ * что читает ровно то, что записал. В конце число строк в таблице сверяется с ожидаемым.
+ * Проверка выполняется дважды: с {@link ConnectionPool} и с {@link ThreadConfinedDataSource}.
+ * При любом расхождении бросается {@link IllegalStateException}.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме (MVStore): {@code jdbc:h2:mem:hexlet_stress_*}
+ */
+public class ConcurrentStressDemo {
+    private static final int ITERATIONS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        var threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+
+        var poolUrl = "jdbc:h2:mem:hexlet_stress_pool;DB_CLOSE_DELAY=-1";
+        try (var pool = new ConnectionPoolBuilder().withUrl(poolUrl).withMaxSize(threads).build()) {
+            run("ConnectionPool", poolUrl, pool, threads);
+        }
+        var confinedUrl = "jdbc:h2:mem:hexlet_stress_confined;DB_CLOSE_DELAY=-1";
+        try (var confined = new ThreadConfinedDataSource(confinedUrl)) {
+            run("ThreadConfinedDataSource", confinedUrl, confined, threads);
+        }
+    }
+
+    private static void run(String name, String url, DataSource dataSource, int threads) throws Exception {
+        try (var connection = DriverManager.getConnection(url)) {
+            UserSchema.createTable(connection);
+
+            var userDAO = new UserDAO(dataSource);
+            var tasks = new ArrayList<Callable<Integer>>();
+            for (var t = 0; t < threads; t++) {
+                var worker = t;
+                tasks.add(() -> work(userDAO, worker));
+            }
+
+            var executor = Executors.newFixedThreadPool(threads);
+            var start = System.nanoTime();
+            var expectedRows = 0;
+            try {
+                for (var future : executor.invokeAll(tasks)) {
+                    expectedRows += future.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(name + ": worker failed", e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+            var elapsed = System.nanoTime() - start;
+
+            long actualRows;
+            try (var stmt = connection.createStatement(); var rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                rs.next();
+                actualRows = rs.getLong(1);
+            }
+            if (actualRows != expectedRows) {
+                throw new IllegalStateException(name + ": expected " + expectedRows + " rows, found " + actualRows);
+            }
+
+            var operations = userDAO.getMetrics().snapshot().values().stream().mapToLong(OperationStats::count).sum();
+            System.out.printf("%s: %d threads, %d operations in %.1f ms (%.0f ops/sec), %d rows, %s%n",
+                    name, threads, operations, elapsed / 1_000_000.0, operations * 1_000_000_000.0 / elapsed,
+                    actualRows, userDAO.getStatementCacheStats());
+
+            try (var stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
+
+    /**
+     * @return сколько пользователей поток оставил в таблице
+     */
+    private static int work(UserDAO userDAO, int worker) throws SQLException {
+        var random = ThreadLocalRandom.current();
+        var kept = 0;
+        for (var i = 0; i < ITERATIONS; i++) {
+            var user = new User("worker_" + worker + "_" + i, "555" + i);
+            userDAO.save(user);
+
+            var found = userDAO.find(user.getId())
+                    .orElseThrow(() -> new IllegalStateException("Lost user " + user.getId()));
+            check(found.getName().equals(user.getName()), "Wrong name for user " + user.getId());
+
+            found.setPhone("777" + i);
+            userDAO.save(found);
+            var updated = userDAO.find(user.getId()).orElseThrow();
+            check(updated.getPhone().equals("777" + i), "Lost update for user " + user.getId());
+
+            if (random.nextBoolean()) {
+                userDAO.delete(updated);
+                check(userDAO.find(user.getId()).isEmpty(), "Deleted user is still visible: " + user.getId());
+            } else {
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
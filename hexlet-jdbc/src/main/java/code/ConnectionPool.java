@@ -0,0 +1,372 @@
+package code;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Простой ограниченный пул соединений к БД (например, H2), реализующий {@link DataSource}.
+ *
+ * <p>Вместо того чтобы открывать соединение через {@link DriverManager} на каждую операцию
+ * или делить одно {@link Connection} между потоками, клиент берёт соединение из пула
+ * через {@link #getConnection()} и возвращает его обратно вызовом {@link Connection#close()}.
+ *
+ * <h2>Возможности:</h2>
+ * <ul>
+ *   <li>Ограничение числа одновременно выданных соединений ({@code maxSize}).</li>
+ *   <li>Таймаут ожидания свободного соединения — после него бросается {@link SQLTimeoutException}.</li>
+ *   <li>Проверка соединения через {@link Connection#isValid(int)} перед выдачей.</li>
+ *   <li>Фоновое закрытие соединений, простаивающих дольше {@code idleTimeout}.</li>
+ *   <li>Статистика через {@link #getStats()}.</li>
+ * </ul>
+ *
+ * <h2>Как устроено:</h2>
+ * Клиент получает не само физическое соединение, а прокси над ним. Вызов {@code close()} на прокси
+ * возвращает физическое соединение в пул, а любые последующие вызовы на прокси бросают {@link SQLException}.
+ * Свободные соединения хранятся в стеке (LIFO), чтобы чаще переиспользовались "тёплые" соединения,
+ * а давно не используемые уходили на закрытие.
+ *
+ * <p>При возврате соединение приводится к состоянию, в котором его создали: незакоммиченная транзакция
+ * откатывается, а auto-commit, уровень изоляции и режим только для чтения восстанавливаются,
+ * чтобы настройки одного заёмщика не достались следующему.
+ *
+ * <h2>Замечание:</h2>
+ * In-memory H2 удаляет базу, когда закрывается её последнее соединение, — а пул закрывает простаивающие
+ * соединения. Для таких баз добавляйте в URL {@code ;DB_CLOSE_DELAY=-1}.
+ *
+ * <p>Создаётся через {@link ConnectionPoolBuilder}.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService evictor;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private PrintWriter logWriter;
+
+    ConnectionPool(String url, String user, String password, int maxSize,
+                   long acquireTimeoutMillis, long idleTimeoutMillis, int validationTimeoutSeconds) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = Math.max(idleTimeoutMillis / 2, 1);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Берёт соединение из пула, при необходимости создавая новое.
+     *
+     * <p>Если все {@code maxSize} соединений заняты — ждёт освобождения не дольше {@code acquireTimeout}.
+     *
+     * @return соединение; его нужно закрыть, чтобы вернуть в пул
+     * @throws SQLTimeoutException если свободное соединение не появилось за отведённое время
+     * @throws SQLException        если пул закрыт или соединение не удалось создать
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        ensureOpen();
+        var start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMillis
+                        + " ms waiting for a connection (max pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+
+        try {
+            var pooled = takeIdle();
+            if (pooled == null) {
+                var physical = DriverManager.getConnection(url, user, password);
+                try {
+                    pooled = new PooledConnection(physical);
+                } catch (SQLException e) {
+                    physical.close();
+                    throw e;
+                }
+                created.increment();
+            }
+            borrowed.increment();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool credentials are fixed at construction time");
+    }
+
+    /**
+     * @return текущая статистика пула
+     */
+    public PoolStats getStats() {
+        var idleCount = idle.size();
+        var total = created.sum() - destroyed.sum();
+        return new PoolStats(maxSize, (int) total, idleCount, (int) Math.max(total - idleCount, 0),
+                permits.getQueueLength(), created.sum(), destroyed.sum(), borrowed.sum(), timeouts.sum(),
+                waitNanos.sum());
+    }
+
+    /**
+     * Закрывает пул и все свободные соединения.
+     *
+     * <p>Выданные соединения закрываются физически при возврате.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            evictor.shutdownNow();
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isValid(pooled.physical)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed.get() || pooled.broken || !reset(pooled)) {
+                destroy(pooled);
+            } else {
+                pooled.lastReturnedNanos = System.nanoTime();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Возвращает соединение в исходное состояние перед повторной выдачей.
+     */
+    private boolean reset(PooledConnection pooled) {
+        var physical = pooled.physical;
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.getTransactionIsolation() != pooled.initialIsolation) {
+                physical.setTransactionIsolation(pooled.initialIsolation);
+            }
+            if (physical.isReadOnly() != pooled.initialReadOnly) {
+                physical.setReadOnly(pooled.initialReadOnly);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void evictIdle() {
+        var now = System.nanoTime();
+        var timeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        for (var pooled : idle) {
+            // removeFirstOccurrence вернёт true только одному из конкурентов — заёмщику или нам
+            if (now - pooled.lastReturnedNanos > timeoutNanos && idle.removeFirstOccurrence(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+            // соединение всё равно выбрасываем
+        }
+        destroyed.increment();
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Физическое соединение, которым владеет пул.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final int initialIsolation;
+        private final boolean initialReadOnly;
+        private volatile long lastReturnedNanos = System.nanoTime();
+        private volatile boolean broken;
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.initialIsolation = physical.getTransactionIsolation();
+            this.initialReadOnly = physical.isReadOnly();
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, new Lease(this));
+        }
+    }
+
+    /**
+     * Обработчик вызовов на выданном клиенту прокси-соединении.
+     */
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "unwrap":
+                    // позволяет добраться до физического соединения, например для кэшей, привязанных к нему
+                    if (args[0] == Connection.class) {
+                        return pooled.physical;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                var cause = e.getCause();
+                // SQLState класса 08 — ошибка соединения: такое соединение в пул не возвращаем
+                if (cause instanceof SQLException sqlException
+                        && sqlException.getSQLState() != null
+                        && sqlException.getSQLState().startsWith("08")) {
+                    pooled.broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+}
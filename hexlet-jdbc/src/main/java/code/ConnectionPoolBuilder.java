@@ -0,0 +1,71 @@
+package code;
+
+import java.util.Objects;
+
+/**
+ * Builder для {@link ConnectionPool}.
+ *
+ * <pre>{@code
+ * var pool = new ConnectionPoolBuilder()
+ *         .withUrl("jdbc:h2:mem:hexlet_test;DB_CLOSE_DELAY=-1")
+ *         .withMaxSize(8)
+ *         .withAcquireTimeoutMillis(1_000)
+ *         .build();
+ * }</pre>
+ */
+public class ConnectionPoolBuilder {
+    private String url;
+    private String user = "";
+    private String password = "";
+    private int maxSize = Runtime.getRuntime().availableProcessors() * 2;
+    private long acquireTimeoutMillis = 30_000;
+    private long idleTimeoutMillis = 600_000;
+    private int validationTimeoutSeconds = 5;
+
+    public ConnectionPoolBuilder withUrl(String url) {
+        this.url = url;
+        return this;
+    }
+
+    public ConnectionPoolBuilder withUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    public ConnectionPoolBuilder withPassword(String password) {
+        this.password = password;
+        return this;
+    }
+
+    public ConnectionPoolBuilder withMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public ConnectionPoolBuilder withAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        return this;
+    }
+
+    public ConnectionPoolBuilder withIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public ConnectionPoolBuilder withValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    public ConnectionPool build() {
+        Objects.requireNonNull(url, "JDBC url must not be null");
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max pool size must be positive: " + maxSize);
+        }
+        if (acquireTimeoutMillis < 0 || idleTimeoutMillis <= 0 || validationTimeoutSeconds < 0) {
+            throw new IllegalArgumentException("Pool timeouts must not be negative");
+        }
+        return new ConnectionPool(url, user, password, maxSize,
+                acquireTimeoutMillis, idleTimeoutMillis, validationTimeoutSeconds);
+    }
+}
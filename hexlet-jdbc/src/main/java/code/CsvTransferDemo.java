@@ -0,0 +1,58 @@
+package code;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+
+/**
+ * Потоковая загрузка и выгрузка {@value #ROWS} пользователей через {@link UserCsvTransfer}.
+ *
+ * <p>Генерирует CSV, загружает его пакетными вставками, выгружает обратно и загружает ещё раз
+ * через H2 {@code CSVREAD}. Ход работы печатается каждые {@value #PROGRESS_EVERY} строк.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_csv}, соединения из {@link ConnectionPool}.
+ */
+public class CsvTransferDemo {
+    private static final int ROWS = 1_000_000;
+    private static final int PROGRESS_EVERY = 250_000;
+
+    public static void main(String[] args) throws IOException, SQLException {
+        var source = Files.createTempFile("users", ".csv");
+        var exported = Files.createTempFile("users-export", ".csv");
+        try (var writer = Files.newBufferedWriter(source, StandardCharsets.UTF_8)) {
+            writer.write("username,phone\n");
+            for (var i = 0; i < ROWS; i++) {
+                writer.write("partner_user_" + i + ",\"+1 555," + i + "\"\n");
+            }
+        }
+
+        try (var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:hexlet_csv;DB_CLOSE_DELAY=-1")
+                .withMaxSize(1).build()) {
+            try (var connection = pool.getConnection()) {
+                UserSchema.createTable(connection);
+            }
+
+            var transfer = new UserCsvTransfer(pool);
+            System.out.println("import (batched):  " + transfer.importCsv(source, CsvTransferDemo::printProgress));
+            System.out.println("export:            " + transfer.exportCsv(exported, CsvTransferDemo::printProgress));
+
+            try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+                stmt.execute("TRUNCATE TABLE users");
+            }
+            System.out.println("import (CSVREAD):  " + transfer.importCsvRead(exported,
+                    CsvTransferDemo::printProgress));
+            System.out.println("Files identical: " + (Files.mismatch(source, exported) == -1));
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(exported);
+        }
+    }
+
+    private static void printProgress(CsvTransferStats progress) {
+        if (progress.rows() % PROGRESS_EVERY == 0) {
+            System.out.println("  ... " + progress);
+        }
+    }
+}
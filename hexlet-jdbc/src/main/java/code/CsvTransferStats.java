@@ -0,0 +1,27 @@
+package code;
+
+/**
+ * Итоги (или промежуточное состояние) импорта/экспорта {@link UserCsvTransfer}.
+ *
+ * @param rows         количество перенесённых строк
+ * @param bytes        количество прочитанных или записанных байт файла
+ * @param elapsedNanos затраченное время в наносекундах
+ */
+public record CsvTransferStats(long rows, long bytes, long elapsedNanos) {
+
+    /**
+     * @return скорость в строках в секунду
+     */
+    public double rowsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows, %.1f MiB in %.1f ms, %.0f rows/sec",
+                rows, bytes / (1024.0 * 1024.0), elapsedNanos / 1_000_000.0, rowsPerSecond());
+    }
+}
@@ -0,0 +1,207 @@
+package code;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Метрики операций {@link UserDAO}: количество, ошибки, строки и гистограмма задержек по каждой {@link DaoOperation}.
+ *
+ * <h2>Накладные расходы:</h2>
+ * <ul>
+ *   <li>Запись не создаёт объектов: счётчики — {@link LongAdder} (распределены по ячейкам, чтобы потоки
+ *       не конкурировали за одну), гистограмма — массив атомарных счётчиков.</li>
+ *   <li>Выключенные метрики ({@link #setEnabled(boolean)}) стоят одного чтения volatile-поля:
+ *       {@link #start()} возвращает 0 без вызова {@link System#nanoTime()}, и запись пропускается.</li>
+ * </ul>
+ *
+ * <h2>Чтение:</h2>
+ * Через {@link #snapshot()} или JMX после {@link #registerMBeans(String)}
+ * (объекты {@code code:type=UserDAO,name=<имя>,operation=<операция>}).
+ *
+ * <pre>{@code
+ * var metrics = new DaoMetrics();
+ * var userDAO = new UserDAOBuilder().withDataSource(pool).withMetrics(metrics).build();
+ * metrics.registerMBeans("users");
+ * }</pre>
+ */
+public class DaoMetrics {
+    private final Map<DaoOperation, OperationMetrics> operations = new EnumMap<>(DaoOperation.class);
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile boolean enabled = true;
+
+    public DaoMetrics() {
+        for (var operation : DaoOperation.values()) {
+            operations.put(operation, new OperationMetrics(operation));
+        }
+    }
+
+    /**
+     * @param enabled {@code false} — перестать собирать метрики; уже собранные значения сохраняются
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Начинает замер операции.
+     *
+     * @return метка времени для {@link #success} / {@link #failure} или 0, если метрики выключены
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Записывает успешное выполнение операции.
+     *
+     * @param operation операция
+     * @param start     значение, полученное из {@link #start()}
+     * @param rows      количество затронутых или прочитанных строк
+     */
+    public void success(DaoOperation operation, long start, long rows) {
+        if (start != 0) {
+            operations.get(operation).success(System.nanoTime() - start, rows);
+        }
+    }
+
+    /**
+     * Записывает выполнение операции, завершившееся исключением.
+     *
+     * @param operation операция
+     * @param start     значение, полученное из {@link #start()}
+     */
+    public void failure(DaoOperation operation, long start) {
+        if (start != 0) {
+            operations.get(operation).errors.increment();
+        }
+    }
+
+    /**
+     * @return снимок метрик по всем операциям
+     */
+    public Map<DaoOperation, OperationStats> snapshot() {
+        var result = new EnumMap<DaoOperation, OperationStats>(DaoOperation.class);
+        for (var entry : operations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Регистрирует метрики каждой операции в платформенном MBeanServer.
+     *
+     * @param name имя DAO в ObjectName, например {@code users}
+     * @throws JMException если регистрация не удалась (например, имя уже занято)
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        for (var entry : operations.entrySet()) {
+            var objectName = new ObjectName("code:type=UserDAO,name=" + ObjectName.quote(name)
+                    + ",operation=" + entry.getKey().name().toLowerCase());
+            server.registerMBean(entry.getValue(), objectName);
+            registered.add(objectName);
+        }
+    }
+
+    /**
+     * Снимает с регистрации все MBean, зарегистрированные через {@link #registerMBeans(String)}.
+     *
+     * @throws JMException если снятие с регистрации не удалось
+     */
+    public synchronized void unregisterMBeans() throws JMException {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        for (var objectName : registered) {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * Счётчики и гистограмма одной операции.
+     */
+    private static final class OperationMetrics implements OperationMetricsMXBean {
+        private final DaoOperation operation;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        OperationMetrics(DaoOperation operation) {
+            this.operation = operation;
+        }
+
+        void success(long nanos, long affectedRows) {
+            count.increment();
+            rows.add(affectedRows);
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.record(nanos);
+        }
+
+        OperationStats snapshot() {
+            var buckets = histogram.snapshot();
+            var max = maxNanos.get();
+            // верхняя граница корзины может быть больше самого длинного замера — перцентиль не бывает больше максимума
+            return new OperationStats(operation, count.sum(), errors.sum(), rows.sum(), totalNanos.sum(), max,
+                    Math.min(LatencyHistogram.percentile(buckets, 0.5), max),
+                    Math.min(LatencyHistogram.percentile(buckets, 0.9), max),
+                    Math.min(LatencyHistogram.percentile(buckets, 0.99), max),
+                    Math.min(LatencyHistogram.percentile(buckets, 0.999), max));
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return snapshot().meanMicros();
+        }
+
+        @Override
+        public double getP50Micros() {
+            return snapshot().p50Nanos() / 1_000.0;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return snapshot().p99Nanos() / 1_000.0;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return snapshot().p999Nanos() / 1_000.0;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return maxNanos.get() / 1_000.0;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package code;
+
+/**
+ * Вид операции {@link UserDAO}, по которому собираются метрики ({@link DaoMetrics}).
+ */
+public enum DaoOperation {
+    /** Вставка одного пользователя или пакета вставок. */
+    INSERT,
+    /** Обновление (или MERGE) одного пользователя или пакета обновлений. */
+    UPDATE,
+    /** Удаление. */
+    DELETE,
+    /** Поиск одного пользователя по ID. */
+    FIND,
+    /** Поиск нескольких пользователей: по списку ID или страницей. */
+    FIND_MANY
+}
@@ -0,0 +1,23 @@
+package code;
+
+import java.sql.SQLException;
+
+/**
+ * Непроверяемое исключение доступа к данным.
+ *
+ * <p>Используется там, где {@link SQLException} нельзя пробросить напрямую,
+ * например внутри {@link java.util.stream.Stream} или {@link java.util.Iterator}.
+ * Исходное {@link SQLException} доступно через {@link #getCause()}.
+ */
+public class DataAccessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DataAccessException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,248 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import org.h2.store.fs.FileUtils;
+
+/**
+ * Быстрый запуск БД из заранее подготовленного снимка вместо DDL и построчного засева при каждом старте.
+ *
+ * <p>Тестовые и staging-окружения каждый раз создают пустую {@code jdbc:h2:mem:...}, выполняют
+ * {@code CREATE TABLE} и вставляют одни и те же начальные данные. Снимок делается один раз,
+ * а дальше каждый запуск только восстанавливает его.
+ *
+ * <h2>Форматы снимка:</h2>
+ * <ul>
+ *   <li><b>SQL-скрипт</b> ({@link #bootstrap(Connection, Seeder)}) — {@code SCRIPT TO ... COMPRESSION ZIP},
+ *       восстановление через {@code RUNSCRIPT}. Подходит для любой БД, в том числе {@code mem:}, но выигрыш
+ *       скромный: скрипт разбирается и выполняется как SQL, вместе с построением индексов.</li>
+ *   <li><b>Файл MVStore</b> ({@link #bootstrapFile(Path, Seeder)}) — готовый файл {@code .mv.db}, который
+ *       при запуске только копируется в рабочий каталог и открывается как {@code jdbc:h2:file:}.
+ *       SQL не выполняется вовсе, время запуска определяется скоростью копирования файла.</li>
+ *   <li><b>Файл MVStore в памяти</b> ({@link #bootstrapMemory(String, Seeder)}) — тот же {@code .mv.db}
+ *       копируется в файловую систему H2 в памяти ({@code memFS:}). БД не касается диска и доступна
+ *       на запись, как {@code mem:}, а запускается так же быстро, как файловая.</li>
+ * </ul>
+ *
+ * <h2>Замеры ({@link BootstrapDemo}, 200 000 пользователей):</h2>
+ * <ul>
+ *   <li>засев через {@link UserDAO#save(User)} — 8,3–8,9 с;</li>
+ *   <li>SQL-скрипт — 4,4–7,3 с, то есть лишь в 1,2–2 раза быстрее засева;</li>
+ *   <li>файл MVStore на диске — 23–32 мс;</li>
+ *   <li>файл MVStore в памяти — 36–85 мс.</li>
+ * </ul>
+ * Для {@code mem:}-тестов со снимком в десятки тысяч строк стоит брать {@link #bootstrapMemory(String, Seeder)}.
+ *
+ * <h2>Идемпотентность:</h2>
+ * Если таблица {@code users} уже есть, снимок не восстанавливается. После любого пути схема доводится
+ * до актуальной через {@link UserSchema#create(Connection)} ({@code IF NOT EXISTS}), так что снимок,
+ * снятый до появления новых индексов, остаётся пригодным.
+ *
+ * <p>Если снимка ещё нет, схема создаётся, вызывается {@link Seeder}, и результат сохраняется как снимок.
+ * Чтобы пересоздать снимок после изменения начальных данных, достаточно удалить файл.
+ */
+public class DatabaseBootstrap {
+    private static final Pattern MEMORY_NAME = Pattern.compile("[A-Za-z0-9_]+");
+    private static final String USERS_TABLE_EXISTS_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+            + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'USERS'";
+
+    private final Path snapshot;
+
+    /**
+     * @param snapshot файл снимка: {@code .zip} для SQL-скрипта или {@code .mv.db} для файла MVStore
+     */
+    public DatabaseBootstrap(Path snapshot) {
+        this.snapshot = Objects.requireNonNull(snapshot, "Snapshot path must not be null");
+    }
+
+    /**
+     * Заполняет БД начальными данными, если снимка ещё нет.
+     */
+    @FunctionalInterface
+    public interface Seeder {
+        /**
+         * @param conn соединение с БД, в которой уже создана схема {@link UserSchema}
+         * @throws SQLException при ошибках работы с БД
+         */
+        void seed(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Готовит БД по соединению, используя снимок в виде SQL-скрипта.
+     *
+     * @param conn   соединение с БД, например {@code jdbc:h2:mem:hexlet_test}
+     * @param seeder засев, если снимка ещё нет
+     * @return откуда взялись данные и сколько занял запуск
+     * @throws SQLException при ошибках работы с БД
+     * @throws IOException  если не удалось создать каталог для снимка
+     */
+    public BootstrapStats bootstrap(Connection conn, Seeder seeder) throws SQLException, IOException {
+        var start = System.nanoTime();
+        BootstrapStats.Source source;
+        if (usersTableExists(conn)) {
+            source = BootstrapStats.Source.EXISTING;
+        } else if (Files.exists(snapshot)) {
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("RUNSCRIPT FROM " + literal(snapshot) + " COMPRESSION ZIP");
+            }
+            source = BootstrapStats.Source.SNAPSHOT;
+        } else {
+            UserSchema.create(conn);
+            seeder.seed(conn);
+            createDirectories(snapshot);
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("SCRIPT TO " + literal(snapshot) + " COMPRESSION ZIP");
+            }
+            source = BootstrapStats.Source.SEEDED;
+        }
+        UserSchema.create(conn);
+        return new BootstrapStats(source, countUsers(conn), System.nanoTime() - start);
+    }
+
+    /**
+     * Готовит файловую БД из снимка-файла MVStore.
+     *
+     * <p>Если в рабочем каталоге БД уже есть, она используется как есть. Иначе в него копируется снимок,
+     * а если снимка нет — БД создаётся, засевается, сжимается ({@code SHUTDOWN COMPACT}) и копируется
+     * в снимок.
+     *
+     * @param database путь к БД без расширения, например {@code /tmp/hexlet/users}; рядом появится
+     *                 {@code users.mv.db}
+     * @param seeder   засев, если снимка ещё нет
+     * @return откуда взялись данные и сколько занял запуск; URL БД — {@link #fileUrl(Path)}
+     * @throws SQLException при ошибках работы с БД
+     * @throws IOException  при ошибках копирования файлов
+     */
+    public BootstrapStats bootstrapFile(Path database, Seeder seeder) throws SQLException, IOException {
+        var start = System.nanoTime();
+        var dbFile = database.resolveSibling(database.getFileName() + ".mv.db");
+        BootstrapStats.Source source;
+        if (Files.exists(dbFile)) {
+            source = BootstrapStats.Source.EXISTING;
+        } else if (Files.exists(snapshot)) {
+            createDirectories(dbFile);
+            Files.copy(snapshot, dbFile);
+            source = BootstrapStats.Source.SNAPSHOT;
+        } else {
+            try (var conn = DriverManager.getConnection(fileUrl(database))) {
+                UserSchema.create(conn);
+                seeder.seed(conn);
+                try (var stmt = conn.createStatement()) {
+                    stmt.execute("SHUTDOWN COMPACT");
+                }
+            }
+            createDirectories(snapshot);
+            Files.copy(dbFile, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            source = BootstrapStats.Source.SEEDED;
+        }
+        try (var conn = DriverManager.getConnection(fileUrl(database))) {
+            UserSchema.create(conn);
+            return new BootstrapStats(source, countUsers(conn), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Готовит БД в памяти из снимка-файла MVStore.
+     *
+     * <p>Снимок тот же, что у {@link #bootstrapFile(Path, Seeder)}: его байты копируются в файловую систему H2
+     * в памяти, и БД открывается оттуда без разбора SQL. Если снимка нет — БД создаётся там же, засевается,
+     * сжимается и копируется в снимок на диск.
+     *
+     * <p>В отличие от {@code mem:}, данные не пропадают при закрытии последнего соединения: файл живёт
+     * в памяти процесса до его завершения, и повторный вызов с тем же именем вернёт {@code EXISTING}.
+     *
+     * @param name   имя БД: латинские буквы, цифры и {@code _}
+     * @param seeder засев, если снимка ещё нет
+     * @return откуда взялись данные и сколько занял запуск; URL БД — {@link #memoryUrl(String)}
+     * @throws SQLException при ошибках работы с БД
+     * @throws IOException  при ошибках копирования снимка
+     */
+    public BootstrapStats bootstrapMemory(String name, Seeder seeder) throws SQLException, IOException {
+        var start = System.nanoTime();
+        var dbFile = memoryPath(name) + ".mv.db";
+        BootstrapStats.Source source;
+        if (FileUtils.exists(dbFile)) {
+            source = BootstrapStats.Source.EXISTING;
+        } else if (Files.exists(snapshot)) {
+            try (var in = Files.newInputStream(snapshot); var out = FileUtils.newOutputStream(dbFile, false)) {
+                in.transferTo(out);
+            }
+            source = BootstrapStats.Source.SNAPSHOT;
+        } else {
+            try (var conn = DriverManager.getConnection(memoryUrl(name))) {
+                UserSchema.create(conn);
+                seeder.seed(conn);
+                try (var stmt = conn.createStatement()) {
+                    stmt.execute("SHUTDOWN COMPACT");
+                }
+            }
+            createDirectories(snapshot);
+            try (var in = FileUtils.newInputStream(dbFile)) {
+                Files.copy(in, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+            source = BootstrapStats.Source.SEEDED;
+        }
+        try (var conn = DriverManager.getConnection(memoryUrl(name))) {
+            UserSchema.create(conn);
+            return new BootstrapStats(source, countUsers(conn), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param name имя БД, переданное в {@link #bootstrapMemory(String, Seeder)}
+     * @return JDBC URL БД в файловой системе H2 в памяти
+     */
+    public static String memoryUrl(String name) {
+        return "jdbc:h2:" + memoryPath(name);
+    }
+
+    /**
+     * @param database путь к БД без расширения
+     * @return JDBC URL файловой БД; БД остаётся открытой, пока открыто хотя бы одно соединение
+     */
+    public static String fileUrl(Path database) {
+        return "jdbc:h2:file:" + database.toAbsolutePath();
+    }
+
+    private static String memoryPath(String name) {
+        if (!MEMORY_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Memory database name must match " + MEMORY_NAME + ": " + name);
+        }
+        return "memFS:/hexlet-bootstrap/" + name;
+    }
+
+    private static boolean usersTableExists(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement(); var rs = stmt.executeQuery(USERS_TABLE_EXISTS_SQL)) {
+            rs.next();
+            return rs.getLong(1) > 0;
+        }
+    }
+
+    private static long countUsers(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement(); var rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void createDirectories(Path file) throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    /**
+     * Путь к файлу в виде строкового литерала SQL: команды SCRIPT и RUNSCRIPT не принимают параметры.
+     */
+    private static String literal(Path file) {
+        return "'" + file.toAbsolutePath().toString().replace("'", "''") + "'";
+    }
+}
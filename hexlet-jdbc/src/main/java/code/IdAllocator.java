@@ -0,0 +1,22 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Источник ID для новых пользователей, которые известны до вставки строки.
+ *
+ * <p>Если {@link UserDAO} настроен с аллокатором (см. {@link UserDAOBuilder#withIdAllocator(IdAllocator)}),
+ * он вставляет строки с явным ID и не читает {@code getGeneratedKeys()} после каждого INSERT.
+ */
+public interface IdAllocator {
+
+    /**
+     * Выдаёт следующий свободный ID.
+     *
+     * @param conn соединение, через которое можно зарезервировать новый блок ID, если текущий исчерпан
+     * @return новый уникальный ID
+     * @throws SQLException при ошибках резервирования в БД
+     */
+    long nextId(Connection conn) throws SQLException;
+}
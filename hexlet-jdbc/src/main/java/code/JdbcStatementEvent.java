@@ -0,0 +1,59 @@
+package code;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Событие Java Flight Recorder для запроса, выполненного {@link UserDAO}.
+ *
+ * <p>Длительность события — время операции вместе с ожиданием соединения, поэтому в JDK Mission Control
+ * его можно сопоставить с паузами GC и состоянием потоков на той же временной шкале.
+ *
+ * <h2>Порог:</h2>
+ * По умолчанию записываются только запросы дольше {@code 10 ms}. Порог меняется без пересборки —
+ * в настройках записи JFR:
+ *
+ * <pre>{@code
+ * java -XX:StartFlightRecording:code.JdbcStatement#threshold=1ms ...
+ *
+ * try (var recording = new Recording()) {
+ *     recording.enable(JdbcStatementEvent.class).withThreshold(Duration.ofMillis(1));
+ *     recording.start();
+ * }
+ * }</pre>
+ *
+ * <p>Если событие не включено в записи, его создание и проверка {@link #shouldCommit()} почти бесплатны.
+ */
+@Name("code.JdbcStatement")
+@Label("JDBC Statement")
+@Category({"Hexlet JDBC", "DAO"})
+@Description("SQL statement executed by UserDAO")
+@Threshold("10 ms")
+public class JdbcStatementEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("SQL")
+    @Description("SQL template with ? placeholders")
+    String sql;
+
+    @Label("Bind Count")
+    @Description("Number of bind parameters per row")
+    int bindCount;
+
+    @Label("Rows")
+    @Description("Rows affected or read")
+    long rows;
+
+    @Label("Connection Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long connectionWait;
+
+    @Label("Failed")
+    boolean failed;
+}
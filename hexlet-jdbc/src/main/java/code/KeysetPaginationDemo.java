@@ -0,0 +1,65 @@
+package code;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Сравнение OFFSET-пагинации и keyset-пагинации {@link UserDAO#findPageByUsername(String, Long, int)}.
+ *
+ * <p>На каждой глубине печатается время запроса одной страницы. OFFSET вычитывает и отбрасывает
+ * все предыдущие строки, поэтому замедляется с глубиной; keyset-запрос сразу начинает
+ * с нужного ключа по индексу {@code (username, id)}, поэтому время остаётся ровным.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_paging}
+ */
+public class KeysetPaginationDemo {
+    private static final int USERS = 500_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int[] DEPTHS = {0, 1_000, 5_000, 9_000};
+    private static final int REPEATS = 20;
+
+    public static void main(String[] args) throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:h2:mem:hexlet_paging")) {
+            UserSchema.create(connection);
+
+            var userDAO = new UserDAO(connection);
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User(String.format("user_%07d", i), "555" + i));
+            }
+            userDAO.saveAll(users);
+
+            var offsetSql = "SELECT id, username, phone FROM users ORDER BY username, id LIMIT ? OFFSET ?";
+            try (var offsetStmt = connection.prepareStatement(offsetSql)) {
+                for (var page : DEPTHS) {
+                    // OFFSET
+                    var start = System.nanoTime();
+                    for (var r = 0; r < REPEATS; r++) {
+                        offsetStmt.setInt(1, PAGE_SIZE);
+                        offsetStmt.setInt(2, page * PAGE_SIZE);
+                        try (var rs = offsetStmt.executeQuery()) {
+                            while (rs.next()) {
+                                rs.getLong("id");
+                            }
+                        }
+                    }
+                    var offsetNanos = (System.nanoTime() - start) / REPEATS;
+
+                    // Keyset: ключ последней строки предыдущей страницы
+                    var last = page == 0 ? null : users.get(page * PAGE_SIZE - 1);
+                    start = System.nanoTime();
+                    for (var r = 0; r < REPEATS; r++) {
+                        userDAO.findPageByUsername(last == null ? null : last.getName(),
+                                last == null ? null : last.getId(), PAGE_SIZE);
+                    }
+                    var keysetNanos = (System.nanoTime() - start) / REPEATS;
+
+                    System.out.printf("page %5d: OFFSET %8.3f ms, keyset %8.3f ms%n",
+                            page, offsetNanos / 1_000_000.0, keysetNanos / 1_000_000.0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package code;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек с логарифмически-линейными корзинами (в духе HdrHistogram).
+ *
+ * <p>Каждая степень двойки делится на {@value #SUB_BUCKETS} равных корзин, поэтому относительная
+ * погрешность значения не превышает 1/{@value #SUB_BUCKETS} на любом масштабе — от наносекунд до часов.
+ * Запись — это вычисление индекса по битам значения и атомарный инкремент, без блокировок и без аллокаций.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 44;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param value значение (например, длительность в наносекундах); отрицательные считаются нулём
+     */
+    void record(long value) {
+        counts.incrementAndGet(indexOf(Math.min(Math.max(value, 0), MAX_VALUE)));
+    }
+
+    /**
+     * @return копия счётчиков корзин для вычисления перцентилей
+     */
+    long[] snapshot() {
+        var copy = new long[BUCKETS];
+        for (var i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Оценивает перцентиль по снимку корзин.
+     *
+     * @param buckets  снимок из {@link #snapshot()}
+     * @param fraction доля от 0 до 1, например 0.99
+     * @return верхняя граница корзины, в которую попадает перцентиль, или 0 для пустой гистограммы
+     */
+    static long percentile(long[] buckets, double fraction) {
+        long total = 0;
+        for (var count : buckets) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        var target = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (var i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var exponent = 63 - Long.numberOfLeadingZeros(value);
+        var sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        var exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var sub = index % SUB_BUCKETS;
+        var shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
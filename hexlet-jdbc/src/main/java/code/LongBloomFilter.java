@@ -0,0 +1,125 @@
+package code;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный фильтр Блума для ключей типа {@code long}.
+ *
+ * <p>Отвечает на вопрос "мог ли ключ быть добавлен?": ответ "нет" всегда точный,
+ * ответ "возможно" ошибочен с вероятностью, заданной при создании фильтра.
+ * Удалять ключи из фильтра Блума нельзя.
+ *
+ * <h2>Как устроено:</h2>
+ * Ключ отображается в {@code k} позиций битового массива из {@code m} бит (двойное хеширование:
+ * позиция {@code i} равна {@code h1 + i * h2}). При добавлении все {@code k} бит выставляются,
+ * при проверке — все должны быть выставлены. Биты хранятся в {@link AtomicLongArray},
+ * поэтому добавление и проверка безопасны из нескольких потоков без блокировок.
+ */
+public class LongBloomFilter {
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    /**
+     * @param expectedInsertions ожидаемое количество ключей (больше нуля)
+     * @param falsePositiveRate  допустимая вероятность ложноположительного ответа (от 0 до 1)
+     */
+    public LongBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        var bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        var words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Добавляет ключ в фильтр.
+     *
+     * @param key ключ
+     */
+    public void add(long key) {
+        var hash = mix(key);
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32);
+        for (var i = 0; i < hashFunctions; i++) {
+            var bit = Math.floorMod(h1 + (long) i * h2, bitSize);
+            var index = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    /**
+     * @param key ключ
+     * @return {@code false}, если ключ точно не добавлялся; {@code true}, если мог быть добавлен
+     */
+    public boolean mightContain(long key) {
+        var hash = mix(key);
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32);
+        for (var i = 0; i < hashFunctions; i++) {
+            var bit = Math.floorMod(h1 + (long) i * h2, bitSize);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Оценивает текущую вероятность ложноположительного ответа по доле выставленных бит: {@code (X / m)^k}.
+     *
+     * @return оценка вероятности ложноположительного ответа
+     */
+    public double estimatedFalsePositiveRate() {
+        long setBits = 0;
+        for (var i = 0; i < words.length(); i++) {
+            setBits += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) setBits / bitSize, hashFunctions);
+    }
+
+    /**
+     * @return размер битового массива в битах
+     */
+    public long bitSize() {
+        return bitSize;
+    }
+
+    /**
+     * @return количество хеш-функций
+     */
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * @return объём памяти под битовый массив в байтах
+     */
+    public long memoryBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    /**
+     * Перемешивание бит ключа (финализатор SplitMix64), чтобы последовательные ID
+     * равномерно распределялись по битовому массиву.
+     */
+    private static long mix(long key) {
+        var z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
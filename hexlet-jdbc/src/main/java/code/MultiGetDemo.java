@@ -0,0 +1,70 @@
+package code;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Сравнение поиска пользователей по списку ID: цикл по {@link UserDAO#find(Long)}
+ * против одного {@link UserDAO#findAll(java.util.Collection)}.
+ *
+ * <p>Цикл выполняет запрос на каждый ID (проблема "N+1"), {@code findAll} — один запрос на кусок ID.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_multiget}
+ */
+public class MultiGetDemo {
+    private static final int USERS = 100_000;
+    private static final int IDS_PER_REQUEST = 500;
+    private static final int REQUESTS = 200;
+
+    public static void main(String[] args) throws SQLException {
+        try (var connection = DriverManager.getConnection("jdbc:h2:mem:hexlet_multiget")) {
+            UserSchema.createTable(connection);
+
+            var userDAO = new UserDAO(connection);
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User("user_" + i, "555" + i));
+            }
+            userDAO.saveAll(users);
+
+            var random = new Random(42);
+            var requests = new ArrayList<ArrayList<Long>>(REQUESTS);
+            for (var r = 0; r < REQUESTS; r++) {
+                var ids = new ArrayList<Long>(IDS_PER_REQUEST);
+                for (var i = 0; i < IDS_PER_REQUEST; i++) {
+                    ids.add(users.get(random.nextInt(USERS)).getId());
+                }
+                requests.add(ids);
+            }
+
+            // Цикл по find(): один запрос на каждый ID
+            var start = System.nanoTime();
+            var found = 0;
+            for (var ids : requests) {
+                var result = new HashMap<Long, User>();
+                for (var id : ids) {
+                    userDAO.find(id).ifPresent(user -> result.put(id, user));
+                }
+                found += result.size();
+            }
+            var loopNanos = System.nanoTime() - start;
+
+            // findAll(): один запрос на кусок ID
+            start = System.nanoTime();
+            var foundBulk = 0;
+            for (var ids : requests) {
+                foundBulk += userDAO.findAll(ids).size();
+            }
+            var bulkNanos = System.nanoTime() - start;
+
+            System.out.printf("find() loop: %d users, %.2f ms per request%n",
+                    found, loopNanos / 1_000_000.0 / REQUESTS);
+            System.out.printf("findAll():   %d users, %.2f ms per request%n",
+                    foundBulk, bulkNanos / 1_000_000.0 / REQUESTS);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package code;
+
+/**
+ * Снимок статистики {@link NegativeLookupUserRepository}.
+ *
+ * @param lookups                   сколько ID проверено фильтром
+ * @param skipped                   сколько запросов к БД пропущено, потому что ID точно нет
+ * @param falsePositives            сколько раз фильтр ответил "возможно", а пользователя в БД не оказалось
+ * @param estimatedFalsePositiveRate оценка вероятности ложноположительного ответа по заполненности фильтра
+ * @param memoryBytes               объём памяти фильтра в байтах
+ */
+public record NegativeLookupStats(long lookups, long skipped, long falsePositives,
+                                  double estimatedFalsePositiveRate, long memoryBytes) {
+
+    /**
+     * Наблюдаемая доля ложноположительных ответов среди отсутствующих ID.
+     *
+     * <p>Растёт после удалений: удалённые ID остаются в фильтре до {@link NegativeLookupUserRepository#rebuild()}.
+     *
+     * @return доля от 0 до 1
+     */
+    public double observedFalsePositiveRate() {
+        var negatives = skipped + falsePositives;
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+}
@@ -0,0 +1,136 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Декоратор над {@link UserDAO}, который отвечает на запросы несуществующих ID без обращения к БД.
+ *
+ * <p>Держит в памяти {@link LongBloomFilter} по всем существующим ID. Если фильтр говорит,
+ * что ID точно нет, {@link #find(Long)} сразу возвращает {@link Optional#empty()}. Иначе запрос
+ * идёт в БД как обычно — фильтр может ошибаться только в сторону "возможно есть".
+ *
+ * <h2>Поддержание фильтра:</h2>
+ * <ul>
+ *   <li>При создании фильтр строится полным проходом по таблице через {@link UserDAO#streamAll()}.</li>
+ *   <li>{@link #save(User)} добавляет ID нового пользователя в фильтр после вставки.</li>
+ *   <li>{@link #delete(User)} не может убрать ID из фильтра Блума, поэтому удалённые ID
+ *       просто продолжают идти в БД. Со временем доля таких запросов растёт —
+ *       её видно в {@link #getStats()}, и тогда фильтр стоит перестроить через {@link #rebuild()}.</li>
+ * </ul>
+ *
+ * <h2>Замечание:</h2>
+ * Фильтр знает только о вставках, прошедших через этот объект. Если в таблицу пишут в обход него
+ * (другой процесс, прямой SQL), фильтр нужно перестраивать, иначе новые пользователи не будут найдены.
+ */
+public class NegativeLookupUserRepository implements UserRepository {
+    private final UserDAO delegate;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile LongBloomFilter filter;
+    private volatile LongBloomFilter rebuilding;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * Создаёт декоратор и строит фильтр по текущему содержимому таблицы.
+     *
+     * @param delegate           DAO, к которому идут запросы (не null)
+     * @param expectedInsertions ожидаемое количество пользователей с учётом роста (больше нуля)
+     * @param falsePositiveRate  допустимая вероятность лишнего запроса к БД (от 0 до 1)
+     * @throws SQLException при ошибках чтения таблицы
+     */
+    public NegativeLookupUserRepository(UserDAO delegate, long expectedInsertions, double falsePositiveRate)
+            throws SQLException {
+        this.delegate = Objects.requireNonNull(delegate, "Delegate must not be null");
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild();
+    }
+
+    /**
+     * Перестраивает фильтр полным проходом по таблице.
+     *
+     * <p>Пока идёт проход, вставки добавляются и в старый, и в новый фильтр, поэтому они не теряются.
+     *
+     * @throws SQLException при ошибках чтения таблицы
+     */
+    public synchronized void rebuild() throws SQLException {
+        var fresh = new LongBloomFilter(expectedInsertions, falsePositiveRate);
+        rebuilding = fresh;
+        try (var users = delegate.streamAll()) {
+            users.forEach(user -> fresh.add(user.getId()));
+            filter = fresh;
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    @Override
+    public Optional<User> find(Long id) throws SQLException {
+        lookups.increment();
+        if (!filter.mightContain(id)) {
+            skipped.increment();
+            return Optional.empty();
+        }
+        var user = delegate.find(id);
+        if (user.isEmpty()) {
+            falsePositives.increment();
+        }
+        return user;
+    }
+
+    @Override
+    public Map<Long, User> findAll(Collection<Long> ids) throws SQLException {
+        var current = filter;
+        var candidates = new ArrayList<Long>(ids.size());
+        for (var id : ids) {
+            lookups.increment();
+            if (current.mightContain(id)) {
+                candidates.add(id);
+            } else {
+                skipped.increment();
+            }
+        }
+        if (candidates.isEmpty()) {
+            return new HashMap<>();
+        }
+        var found = delegate.findAll(candidates);
+        falsePositives.add(candidates.stream().distinct().filter(id -> !found.containsKey(id)).count());
+        return found;
+    }
+
+    @Override
+    public void save(User user) throws SQLException {
+        delegate.save(user);
+        // rebuilding читается раньше filter: rebuild() выставляет новый filter до того, как обнуляет rebuilding
+        var pending = rebuilding;
+        filter.add(user.getId());
+        if (pending != null) {
+            pending.add(user.getId());
+        }
+    }
+
+    @Override
+    public void delete(User user) throws SQLException {
+        delegate.delete(user);
+    }
+
+    /**
+     * @return статистика пропущенных запросов, ложноположительных ответов и размера фильтра
+     */
+    public NegativeLookupStats getStats() {
+        var current = filter;
+        return new NegativeLookupStats(lookups.sum(), skipped.sum(), falsePositives.sum(),
+                current.estimatedFalsePositiveRate(), current.memoryBytes());
+    }
+}
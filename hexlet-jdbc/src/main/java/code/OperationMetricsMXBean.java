@@ -0,0 +1,24 @@
+package code;
+
+/**
+ * JMX-представление метрик одной операции DAO (см. {@link DaoMetrics#registerMBeans(String)}).
+ *
+ * <p>Все длительности — в микросекундах.
+ */
+public interface OperationMetricsMXBean {
+    long getCount();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
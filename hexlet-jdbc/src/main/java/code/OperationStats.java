@@ -0,0 +1,35 @@
+package code;
+
+/**
+ * Снимок метрик одной операции {@link DaoOperation}.
+ *
+ * <p>Перцентили — оценки по гистограмме с погрешностью до 12.5%, не больше {@code maxNanos}.
+ *
+ * @param operation  операция
+ * @param count      количество успешных выполнений
+ * @param errors     количество выполнений, завершившихся исключением
+ * @param rows       суммарное количество затронутых или прочитанных строк
+ * @param totalNanos суммарная длительность успешных выполнений
+ * @param maxNanos   максимальная длительность
+ * @param p50Nanos   медиана длительности
+ * @param p90Nanos   90-й перцентиль длительности
+ * @param p99Nanos   99-й перцентиль длительности
+ * @param p999Nanos  99.9-й перцентиль длительности
+ */
+public record OperationStats(DaoOperation operation, long count, long errors, long rows, long totalNanos,
+                             long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos) {
+
+    /**
+     * @return средняя длительность в микросекундах
+     */
+    public double meanMicros() {
+        return count == 0 ? 0 : totalNanos / 1_000.0 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: count=%d errors=%d rows=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                operation, count, errors, rows, meanMicros(),
+                p50Nanos / 1_000.0, p99Nanos / 1_000.0, maxNanos / 1_000.0);
+    }
+}
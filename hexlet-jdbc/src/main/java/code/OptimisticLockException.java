@@ -0,0 +1,41 @@
+package code;
+
+import java.sql.SQLException;
+
+/**
+ * Строку пользователя изменили или удалили после того, как её прочитали: условный UPDATE
+ * ({@code ... WHERE id = ? AND version = ?}) не затронул ни одной строки.
+ *
+ * <p>Бросается {@link UserDAO} в режиме оптимистической блокировки
+ * ({@link UserDAOBuilder#withOptimisticLocking(boolean)}). Изменения не записаны; чтобы применить их поверх
+ * свежей версии строки, используйте {@link UserDAO#saveMerging(User, int)}.
+ *
+ * <p>SQLState — {@code 40001} (serialization failure), как у конфликтов, которые БД предлагает повторить.
+ */
+public class OptimisticLockException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final long userId;
+    private final long expectedVersion;
+
+    public OptimisticLockException(long userId, long expectedVersion) {
+        super("User " + userId + " was updated or deleted concurrently (expected version " + expectedVersion + ")",
+                "40001");
+        this.userId = userId;
+        this.expectedVersion = expectedVersion;
+    }
+
+    /**
+     * @return ID пользователя, запись которого не удалась
+     */
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return версия, с которой пользователь был прочитан
+     */
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+}
@@ -0,0 +1,26 @@
+package code;
+
+/**
+ * Снимок статистики {@link ConnectionPool}.
+ *
+ * @param maxSize       максимальный размер пула
+ * @param total         количество открытых физических соединений
+ * @param idle          количество свободных соединений
+ * @param active        количество выданных клиентам соединений
+ * @param waiting       приблизительное количество потоков, ожидающих соединение
+ * @param created       сколько соединений создано за всё время
+ * @param destroyed     сколько соединений закрыто за всё время
+ * @param borrowed      сколько раз соединение выдавалось клиентам
+ * @param timeouts      сколько раз ожидание соединения завершилось таймаутом
+ * @param waitNanos     суммарное время ожидания соединения в наносекундах
+ */
+public record PoolStats(int maxSize, int total, int idle, int active, int waiting,
+                        long created, long destroyed, long borrowed, long timeouts, long waitNanos) {
+
+    /**
+     * @return среднее время ожидания соединения в микросекундах
+     */
+    public double averageWaitMicros() {
+        return borrowed == 0 ? 0 : waitNanos / 1_000.0 / borrowed;
+    }
+}
@@ -0,0 +1,52 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Массовое удаление пользователей: построчный {@link UserDAO#delete(User)}, пакетный
+ * {@link UserDAO#deleteAll(java.util.Collection, int, java.util.function.Consumer)} по списку ID
+ * и {@link UserDAO#purgeWhere(String, List, int, java.util.function.Consumer)} по условию с выводом хода удаления.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_purge}
+ */
+public class PurgeDemo {
+    private static final int USERS = 300_000;
+    private static final int SINGLE_DELETES = 10_000;
+    private static final int BATCH_SIZE = 10_000;
+
+    public static void main(String[] args) throws SQLException {
+        try (var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:hexlet_purge;DB_CLOSE_DELAY=-1")
+                .withMaxSize(1).build()) {
+            try (var conn = pool.getConnection()) {
+                UserSchema.create(conn);
+            }
+            var userDAO = new UserDAO(pool);
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                // каждый третий пользователь попросил удалить свои данные
+                users.add(new User((i % 3 == 0 ? "erase_" : "keep_") + i, "555" + i));
+            }
+            userDAO.saveAll(users, BATCH_SIZE);
+
+            var start = System.nanoTime();
+            for (var i = 0; i < SINGLE_DELETES; i++) {
+                userDAO.delete(users.get(3 * i + 1));
+            }
+            var elapsed = System.nanoTime() - start;
+            System.out.println("delete():    " + new PurgeStats(SINGLE_DELETES, SINGLE_DELETES, elapsed));
+
+            var ids = new ArrayList<Long>();
+            for (var i = SINGLE_DELETES; i < USERS / 3; i++) {
+                ids.add(users.get(3 * i + 1).getId());
+            }
+            System.out.println("deleteAll(): " + userDAO.deleteAll(ids, BATCH_SIZE, null));
+
+            var stats = userDAO.purgeWhere("username LIKE ?", List.of("erase\\_%"), BATCH_SIZE,
+                    progress -> System.out.println("  purged so far: " + progress));
+            System.out.println("purgeWhere(): " + stats);
+        }
+    }
+}
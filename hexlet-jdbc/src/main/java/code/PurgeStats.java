@@ -0,0 +1,29 @@
+package code;
+
+/**
+ * Итоги (или промежуточное состояние) массового удаления {@link UserDAO#deleteAll(java.util.Collection, int,
+ * java.util.function.Consumer)} и {@link UserDAO#purgeWhere(String, java.util.List, int,
+ * java.util.function.Consumer)}.
+ *
+ * @param deleted      количество удалённых строк
+ * @param transactions сколько транзакций (кусков) закоммичено
+ * @param elapsedNanos затраченное время в наносекундах
+ */
+public record PurgeStats(long deleted, int transactions, long elapsedNanos) {
+
+    /**
+     * @return скорость удаления в строках в секунду
+     */
+    public double rowsPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return deleted * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows deleted in %d transactions, %.1f ms, %.0f rows/sec",
+                deleted, transactions, elapsedNanos / 1_000_000.0, rowsPerSecond());
+    }
+}
@@ -0,0 +1,27 @@
+package code;
+
+/**
+ * Итоги {@link ShardRebalancer#rebalance(java.util.List, java.util.List)}.
+ *
+ * @param scanned      сколько строк просмотрено в исходных шардах
+ * @param moved        сколько строк перенесено в другой шард
+ * @param elapsedNanos затраченное время в наносекундах
+ */
+public record RebalanceStats(long scanned, long moved, long elapsedNanos) {
+
+    /**
+     * @return скорость переноса в строках в секунду
+     */
+    public double movedPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return moved * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows scanned, %d moved in %.1f ms, %.0f rows/sec",
+                scanned, moved, elapsedNanos / 1_000_000.0, movedPerSecond());
+    }
+}
@@ -0,0 +1,118 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Аллокатор ID по схеме hi/lo поверх последовательности (SEQUENCE) в H2.
+ *
+ * <p>Последовательность создаётся с шагом {@code blockSize}: каждое {@code NEXT VALUE FOR}
+ * резервирует за этим процессом целый блок {@code [value, value + blockSize)}. Внутри блока ID
+ * выдаются из памяти атомарным счётчиком без блокировок и без обращения к БД, поэтому
+ * на {@code blockSize} вставок приходится один запрос к последовательности.
+ *
+ * <h2>Особенности:</h2>
+ * <ul>
+ *   <li>ID известны до записи — вставки можно собирать в пакеты.</li>
+ *   <li>ID уникальны между процессами, использующими одну последовательность, но могут идти с пропусками:
+ *       неиспользованный остаток блока теряется при перезапуске.</li>
+ *   <li>В таблицу нельзя параллельно вставлять строки с ID от {@code AUTO_INCREMENT} —
+ *       их значения не знают о последовательности и могут совпасть.</li>
+ * </ul>
+ */
+public class SequenceIdAllocator implements IdAllocator {
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final String nextValueSql;
+    private final int blockSize;
+    private volatile Block block = new Block(0, 0);
+
+    /**
+     * @param sequenceName имя последовательности, созданной с шагом {@code blockSize}
+     *                     (см. {@link #createSequence(Connection, String, int)})
+     * @param blockSize    размер блока, совпадающий с шагом последовательности (больше нуля)
+     */
+    public SequenceIdAllocator(String sequenceName, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.nextValueSql = "SELECT NEXT VALUE FOR " + checkIdentifier(sequenceName);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Создаёт последовательность с шагом {@code blockSize}, если её ещё нет.
+     *
+     * <p>Последовательность начинается после максимального ID в таблице {@code users},
+     * чтобы новые ID не пересеклись с уже вставленными.
+     *
+     * @param conn         соединение с БД
+     * @param sequenceName имя последовательности
+     * @param blockSize    шаг последовательности — размер резервируемого блока (больше нуля)
+     * @throws SQLException при ошибках работы с БД
+     */
+    public static void createSequence(Connection conn, String sequenceName, int blockSize) throws SQLException {
+        checkIdentifier(sequenceName);
+        try (var stmt = conn.createStatement()) {
+            long start;
+            try (var rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM users")) {
+                rs.next();
+                start = rs.getLong(1);
+            }
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + sequenceName
+                    + " START WITH " + start + " INCREMENT BY " + blockSize);
+        }
+    }
+
+    @Override
+    public long nextId(Connection conn) throws SQLException {
+        while (true) {
+            var current = block;
+            var id = current.next.getAndIncrement();
+            if (id < current.limit) {
+                return id;
+            }
+            refill(conn, current);
+        }
+    }
+
+    /**
+     * Резервирует новый блок, если его ещё не зарезервировал другой поток.
+     */
+    private synchronized void refill(Connection conn, Block exhausted) throws SQLException {
+        if (block != exhausted) {
+            return;
+        }
+        try (var stmt = conn.prepareStatement(nextValueSql); var rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Sequence did not return a value: " + nextValueSql);
+            }
+            var start = rs.getLong(1);
+            block = new Block(start, start + blockSize);
+        }
+    }
+
+    private static String checkIdentifier(String name) {
+        Objects.requireNonNull(name, "Sequence name must not be null");
+        if (!IDENTIFIER.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid sequence name: " + name);
+        }
+        return name;
+    }
+
+    /**
+     * Зарезервированный блок ID: {@code [next, limit)}.
+     */
+    private static final class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
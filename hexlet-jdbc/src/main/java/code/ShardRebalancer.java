@@ -0,0 +1,211 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import javax.sql.DataSource;
+
+/**
+ * Перенос строк между шардами {@link ShardedUserDAO} при изменении числа шардов.
+ *
+ * <p>Строка живёт в шарде {@code bucket % shardCount}, поэтому при новом числе шардов часть корзин
+ * меняет владельца. Ребалансировщик проходит по каждому исходному шарду однонаправленным курсором
+ * и переносит строки, чей шард изменился, пакетами: сначала пакет записывается в целевой шард
+ * ({@code MERGE INTO ... KEY(id)}) и коммитится, затем удаляется из исходного.
+ *
+ * <h2>Особенности:</h2>
+ * <ul>
+ *   <li>Шарды различаются по БД, а не по объекту {@link DataSource}: URL из {@link java.sql.DatabaseMetaData#getURL()}
+ *       и имя пользователя. Если исходный и целевой шард указывают на одну БД, это один и тот же шард
+ *       и строки в нём не переносятся — иначе MERGE ничего бы не изменил, а DELETE удалил бы их.
+ *       Одна и та же БД дважды в одном списке — ошибка.</li>
+ *   <li>Перенос можно безопасно перезапустить после сбоя: повторный MERGE уже перенесённой строки ничего не меняет.</li>
+ *   <li>Последовательность {@value ShardedUserDAO#SEQUENCE} каждого целевого шарда сдвигается выше всех
+ *       пришедших счётчиков, чтобы новые ID в переехавших корзинах не совпали со старыми.</li>
+ *   <li>Перенос выполняется при остановленной записи: {@link ShardedUserDAO} над старым набором шардов
+ *       нужно закрыть до запуска, а над новым — создать после.</li>
+ * </ul>
+ */
+public class ShardRebalancer {
+    private static final String SCAN_SQL = "SELECT id, username, phone, version FROM users ORDER BY id";
+    private static final String MERGE_SQL = "MERGE INTO users (id, username, phone, version) KEY (id) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM users WHERE id = ?";
+    private static final String MAX_COUNTER_SQL = "SELECT COALESCE(MAX(id / " + ShardedUserDAO.BUCKETS + "), 0) "
+            + "FROM users";
+    private static final String SEQUENCE_VALUE_SQL = "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+            + "WHERE SEQUENCE_NAME = UPPER('" + ShardedUserDAO.SEQUENCE + "')";
+
+    private final int batchSize;
+
+    /**
+     * @param batchSize сколько строк переносить одной транзакцией (больше нуля)
+     */
+    public ShardRebalancer(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Переносит строки из старого набора шардов в новый.
+     *
+     * @param from текущие шарды
+     * @param to   новые шарды; схема в них создаётся при необходимости
+     * @return итоги переноса
+     * @throws SQLException             при ошибках работы с БД; уже перенесённые пакеты остаются на новых местах
+     * @throws IllegalArgumentException если одна БД встречается в списке дважды
+     */
+    public RebalanceStats rebalance(List<? extends DataSource> from, List<? extends DataSource> to)
+            throws SQLException {
+        Objects.requireNonNull(from, "Source shards must not be null");
+        if (to.isEmpty() || to.size() > ShardedUserDAO.BUCKETS) {
+            throw new IllegalArgumentException("Target shard count must be between 1 and " + ShardedUserDAO.BUCKETS);
+        }
+        var start = System.nanoTime();
+        var sourceIds = databaseIds(from, "Source");
+        var targetIds = databaseIds(to, "Target");
+        ShardedUserDAO.createSchema(to);
+        long scanned = 0;
+        long moved = 0;
+        for (var s = 0; s < from.size(); s++) {
+            var source = from.get(s);
+            var sourceId = sourceIds.get(s);
+            try (var conn = source.getConnection();
+                 var stmt = conn.prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(batchSize);
+                var pending = new ArrayList<List<User>>(to.size());
+                for (var i = 0; i < to.size(); i++) {
+                    pending.add(new ArrayList<>());
+                }
+                try (var rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        scanned++;
+                        var id = rs.getLong(1);
+                        var target = ShardedUserDAO.shardOf(id, to.size());
+                        if (targetIds.get(target).equals(sourceId)) {
+                            continue;
+                        }
+                        var user = new User(rs.getString(2), rs.getString(3));
+                        user.setId(id);
+                        user.setVersion(rs.getLong(4));
+                        var batch = pending.get(target);
+                        batch.add(user);
+                        if (batch.size() == batchSize) {
+                            moved += move(batch, conn, to.get(target));
+                        }
+                    }
+                }
+                for (var i = 0; i < to.size(); i++) {
+                    moved += move(pending.get(i), conn, to.get(i));
+                }
+            }
+        }
+        for (var target : to) {
+            bumpSequence(target);
+        }
+        return new RebalanceStats(scanned, moved, System.nanoTime() - start);
+    }
+
+    /**
+     * Определяет, в какую БД ведёт каждый шард, и проверяет, что БД в списке не повторяются.
+     *
+     * @return идентификаторы БД в порядке шардов
+     */
+    private static List<String> databaseIds(List<? extends DataSource> shards, String role) throws SQLException {
+        var ids = new ArrayList<String>(shards.size());
+        var seen = new HashSet<String>();
+        for (var i = 0; i < shards.size(); i++) {
+            String id;
+            try (var conn = shards.get(i).getConnection()) {
+                var meta = conn.getMetaData();
+                id = meta.getUserName() + "@" + meta.getURL();
+            }
+            if (!seen.add(id)) {
+                throw new IllegalArgumentException(role + " shard " + i + " points to the same database as another "
+                        + role.toLowerCase() + " shard: " + id);
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Записывает пакет в целевой шард, затем удаляет его из исходного.
+     *
+     * <p>Удаление идёт через то же соединение, что и проход по исходному шарду, чтобы не брать
+     * из его пула второе соединение.
+     *
+     * @return количество перенесённых строк; пакет после вызова пуст
+     */
+    private int move(List<User> batch, Connection source, DataSource target) throws SQLException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try (var conn = target.getConnection()) {
+            inTransaction(conn, MERGE_SQL, batch, (stmt, user) -> {
+                stmt.setLong(1, user.getId());
+                stmt.setString(2, user.getName());
+                stmt.setString(3, user.getPhone());
+                stmt.setLong(4, user.getVersion());
+            });
+        }
+        inTransaction(source, DELETE_SQL, batch, (stmt, user) -> stmt.setLong(1, user.getId()));
+        var count = batch.size();
+        batch.clear();
+        return count;
+    }
+
+    private static void inTransaction(Connection conn, String sql, List<User> batch, Binder binder)
+            throws SQLException {
+        var autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (var stmt = conn.prepareStatement(sql)) {
+            for (var user : batch) {
+                binder.bind(stmt, user);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Сдвигает последовательность счётчиков шарда выше максимального счётчика его строк.
+     */
+    private static void bumpSequence(DataSource target) throws SQLException {
+        try (var conn = target.getConnection(); var stmt = conn.createStatement()) {
+            long maxCounter;
+            try (var rs = stmt.executeQuery(MAX_COUNTER_SQL)) {
+                rs.next();
+                maxCounter = rs.getLong(1);
+            }
+            long current;
+            try (var rs = stmt.executeQuery(SEQUENCE_VALUE_SQL)) {
+                current = rs.next() ? rs.getLong(1) : 1;
+            }
+            if (maxCounter >= current) {
+                stmt.execute("ALTER SEQUENCE " + ShardedUserDAO.SEQUENCE + " RESTART WITH " + (maxCounter + 1));
+            }
+        }
+    }
+
+    /**
+     * Заполнение параметров пакетного запроса для одного пользователя.
+     */
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement stmt, User user) throws SQLException;
+    }
+}
@@ -0,0 +1,413 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * DAO, распределяющий пользователей по нескольким независимым БД (шардам) по ID.
+ *
+ * <p>Каждый шард — отдельная БД H2 (файл или память) со своим {@link DataSource} и своим {@link UserDAO},
+ * поэтому записи в разные шарды не конкурируют за один файл и одну блокировку.
+ *
+ * <h2>Маршрутизация:</h2>
+ * Младшие {@value #BUCKET_BITS} бит ID — номер корзины ({@value #BUCKETS} корзин), корзина живёт
+ * в шарде {@code bucket % shardCount}. Новые пользователи раскладываются по шардам по кругу, а ID
+ * генерируется так, чтобы его корзина принадлежала выбранному шарду: {@code (counter << 10) | bucket},
+ * где {@code counter} берётся из последовательности {@value #SEQUENCE} этого шарда по схеме hi/lo
+ * ({@link SequenceIdAllocator}). Поэтому шард любого ID вычисляется без обращения к БД.
+ *
+ * <h2>Запросы по нескольким шардам:</h2>
+ * {@link #findAll(Collection)}, {@link #findByUsername(String)}, {@link #findByUsernamePrefix(String, int)},
+ * {@link #findPage(Long, int)} и {@link #saveAll(Collection)} выполняются на всех нужных шардах параллельно,
+ * а отсортированные ответы шардов сливаются (k-way merge) в один отсортированный результат.
+ *
+ * <h2>Изменение числа шардов:</h2>
+ * При другом числе шардов часть корзин переезжает; строки переносит {@link ShardRebalancer}.
+ * Схема шардов создаётся через {@link #createSchema(List)}.
+ */
+public class ShardedUserDAO implements UserRepository, AutoCloseable {
+    /**
+     * Количество бит ID под номер корзины.
+     */
+    public static final int BUCKET_BITS = 10;
+
+    /**
+     * Количество корзин — максимальное число шардов.
+     */
+    public static final int BUCKETS = 1 << BUCKET_BITS;
+
+    /**
+     * Последовательность счётчиков ID в каждом шарде.
+     */
+    public static final String SEQUENCE = "users_shard_seq";
+
+    /**
+     * Шаг последовательности — сколько счётчиков шард резервирует за одно обращение к ней.
+     */
+    public static final int SEQUENCE_BLOCK_SIZE = 100;
+
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+    private static final Comparator<User> BY_USERNAME = Comparator.comparing(User::getName)
+            .thenComparing(User::getId);
+
+    private final List<UserDAO> shards;
+    private final ExecutorService fanOut;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    /**
+     * @param dataSources источники соединений шардов; порядок задаёт номера шардов (от 1 до {@value #BUCKETS})
+     */
+    public ShardedUserDAO(List<? extends DataSource> dataSources) {
+        this(dataSources, new DaoMetrics());
+    }
+
+    /**
+     * @param dataSources источники соединений шардов; порядок задаёт номера шардов (от 1 до {@value #BUCKETS})
+     * @param metrics     общие метрики всех шардов
+     */
+    public ShardedUserDAO(List<? extends DataSource> dataSources, DaoMetrics metrics) {
+        checkShardCount(dataSources.size());
+        var shardList = new ArrayList<UserDAO>(dataSources.size());
+        for (var i = 0; i < dataSources.size(); i++) {
+            shardList.add(new UserDAOBuilder()
+                    .withDataSource(dataSources.get(i))
+                    .withIdAllocator(new ShardIdAllocator(i, dataSources.size()))
+                    .withMetrics(metrics)
+                    .build());
+        }
+        this.shards = List.copyOf(shardList);
+        this.fanOut = Executors.newFixedThreadPool(dataSources.size(), r -> {
+            var thread = new Thread(r, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Создаёт на каждом шарде таблицу, индексы ({@link UserSchema}) и последовательность счётчиков ID.
+     *
+     * @param dataSources источники соединений шардов
+     * @throws SQLException при ошибках работы с БД
+     */
+    public static void createSchema(List<? extends DataSource> dataSources) throws SQLException {
+        for (var dataSource : dataSources) {
+            try (var conn = dataSource.getConnection()) {
+                UserSchema.create(conn);
+                try (var stmt = conn.createStatement()) {
+                    stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE + " START WITH 1 INCREMENT BY "
+                            + SEQUENCE_BLOCK_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id ID пользователя
+     * @return номер корзины ID
+     */
+    public static int bucketOf(long id) {
+        return (int) (id & (BUCKETS - 1));
+    }
+
+    /**
+     * @param id         ID пользователя
+     * @param shardCount количество шардов
+     * @return номер шарда, в котором живёт ID
+     */
+    public static int shardOf(long id, int shardCount) {
+        return bucketOf(id) % shardCount;
+    }
+
+    /**
+     * @return количество шардов
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Сохраняет пользователя: новый — в следующий по кругу шард, существующий — в шард его ID.
+     */
+    @Override
+    public void save(User user) throws SQLException {
+        shardFor(user).save(user);
+    }
+
+    /**
+     * Сохраняет пользователей пакетами, параллельно по шардам.
+     *
+     * @param users сохраняемые пользователи (не null)
+     * @return суммарная статистика; время — от начала до завершения самого медленного шарда
+     * @throws SQLException при ошибках работы с БД
+     */
+    public BatchStats saveAll(Collection<User> users) throws SQLException {
+        var start = System.nanoTime();
+        var groups = new ArrayList<List<User>>(shards.size());
+        for (var i = 0; i < shards.size(); i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (var user : users) {
+            groups.get(user.getId() == null ? roundRobin() : shardOf(user.getId(), shards.size())).add(user);
+        }
+        var calls = new ArrayList<Callable<BatchStats>>();
+        for (var i = 0; i < shards.size(); i++) {
+            var shard = shards.get(i);
+            var group = groups.get(i);
+            if (!group.isEmpty()) {
+                calls.add(() -> shard.saveAll(group));
+            }
+        }
+        int inserted = 0;
+        int updated = 0;
+        int skipped = 0;
+        for (var stats : fanOut(calls)) {
+            inserted += stats.inserted();
+            updated += stats.updated();
+            skipped += stats.skipped();
+        }
+        return new BatchStats(inserted, updated, skipped, System.nanoTime() - start);
+    }
+
+    @Override
+    public void delete(User user) throws SQLException {
+        shardFor(user).delete(user);
+    }
+
+    @Override
+    public Optional<User> find(Long id) throws SQLException {
+        return shards.get(shardOf(id, shards.size())).find(id);
+    }
+
+    /**
+     * Находит пользователей по ID: ID группируются по шардам, шарды опрашиваются параллельно.
+     */
+    @Override
+    public Map<Long, User> findAll(Collection<Long> ids) throws SQLException {
+        var groups = new HashMap<Integer, List<Long>>();
+        for (var id : ids) {
+            groups.computeIfAbsent(shardOf(id, shards.size()), shard -> new ArrayList<>()).add(id);
+        }
+        var calls = new ArrayList<Callable<Map<Long, User>>>();
+        for (var group : groups.entrySet()) {
+            var shard = shards.get(group.getKey());
+            calls.add(() -> shard.findAll(group.getValue()));
+        }
+        var result = new HashMap<Long, User>(ids.size() * 2);
+        for (var found : fanOut(calls)) {
+            result.putAll(found);
+        }
+        return result;
+    }
+
+    /**
+     * Находит пользователей с заданным именем во всех шардах.
+     *
+     * @return пользователи, упорядоченные по ID
+     */
+    public List<User> findByUsername(String username) throws SQLException {
+        return mergeSorted(fanOutAll(shard -> shard.findByUsername(username)), BY_ID, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Находит пользователей по префиксу имени во всех шардах.
+     *
+     * <p>Каждый шард отдаёт не больше {@code limit} строк, из их слияния берутся первые {@code limit}.
+     *
+     * @return пользователи, упорядоченные по имени и ID
+     */
+    public List<User> findByUsernamePrefix(String prefix, int limit) throws SQLException {
+        return mergeSorted(fanOutAll(shard -> shard.findByUsernamePrefix(prefix, limit)), BY_USERNAME, limit);
+    }
+
+    /**
+     * Возвращает страницу пользователей всех шардов, упорядоченных по ID (keyset-пагинация).
+     *
+     * @param afterId ID последнего пользователя предыдущей страницы или {@code null} для первой страницы
+     * @param limit   максимальное количество пользователей на странице (больше нуля)
+     * @return страница с токеном продолжения для {@link #continuePage(String, int)}
+     */
+    public UserPage findPage(Long afterId, int limit) throws SQLException {
+        var pages = fanOutAll(shard -> shard.findPage(afterId, limit));
+        var hasMore = pages.stream().anyMatch(UserPage::hasNext);
+        var lists = pages.stream().map(UserPage::users).toList();
+        var users = mergeSorted(lists, BY_ID, limit + 1);
+        String nextToken = null;
+        if (users.size() > limit || hasMore) {
+            if (users.size() > limit) {
+                users.remove(limit);
+            }
+            nextToken = "id:" + users.get(users.size() - 1).getId();
+        }
+        return new UserPage(users, nextToken);
+    }
+
+    /**
+     * Возвращает следующую страницу по токену из {@link #findPage(Long, int)}.
+     *
+     * @throws IllegalArgumentException если токен повреждён
+     */
+    public UserPage continuePage(String token, int limit) throws SQLException {
+        Objects.requireNonNull(token, "Page token must not be null");
+        if (!token.startsWith("id:")) {
+            throw new IllegalArgumentException("Unknown page token: " + token);
+        }
+        try {
+            return findPage(Long.parseLong(token.substring(3)), limit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed page token: " + token, e);
+        }
+    }
+
+    /**
+     * Останавливает потоки параллельных запросов. Источники соединений не закрываются.
+     */
+    @Override
+    public void close() {
+        fanOut.shutdown();
+    }
+
+    private UserDAO shardFor(User user) {
+        return shards.get(user.getId() == null ? roundRobin() : shardOf(user.getId(), shards.size()));
+    }
+
+    private int roundRobin() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    private <T> List<T> fanOutAll(ShardCall<T> call) throws SQLException {
+        var calls = new ArrayList<Callable<T>>(shards.size());
+        for (var shard : shards) {
+            calls.add(() -> call.apply(shard));
+        }
+        return fanOut(calls);
+    }
+
+    /**
+     * Выполняет запросы к шардам параллельно и ждёт все ответы.
+     */
+    private <T> List<T> fanOut(List<Callable<T>> calls) throws SQLException {
+        if (calls.size() == 1) {
+            try {
+                return List.of(calls.get(0).call());
+            } catch (SQLException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        var futures = new ArrayList<Future<T>>(calls.size());
+        for (var call : calls) {
+            futures.add(fanOut.submit(call));
+        }
+        var results = new ArrayList<T>(calls.size());
+        try {
+            for (var future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    /**
+     * Сливает отсортированные списки в один отсортированный, не больше {@code limit} элементов.
+     */
+    static List<User> mergeSorted(List<List<User>> sorted, Comparator<User> order, int limit) {
+        var heads = new PriorityQueue<Cursor>((a, b) -> order.compare(a.current(), b.current()));
+        for (var list : sorted) {
+            if (!list.isEmpty()) {
+                heads.add(new Cursor(list));
+            }
+        }
+        var result = new ArrayList<User>();
+        while (!heads.isEmpty() && result.size() < limit) {
+            var head = heads.poll();
+            result.add(head.current());
+            if (++head.position < head.list.size()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static void checkShardCount(int shardCount) {
+        if (shardCount < 1 || shardCount > BUCKETS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + BUCKETS + ": " + shardCount);
+        }
+    }
+
+    /**
+     * Позиция в одном из сливаемых списков.
+     */
+    private static final class Cursor {
+        private final List<User> list;
+        private int position;
+
+        Cursor(List<User> list) {
+            this.list = list;
+        }
+
+        User current() {
+            return list.get(position);
+        }
+    }
+
+    /**
+     * Выдаёт ID, корзина которых принадлежит шарду {@code shard}.
+     */
+    private static final class ShardIdAllocator implements IdAllocator {
+        private final SequenceIdAllocator counters = new SequenceIdAllocator(SEQUENCE, SEQUENCE_BLOCK_SIZE);
+        private final int shard;
+        private final int shardCount;
+        private final int bucketsPerShard;
+
+        ShardIdAllocator(int shard, int shardCount) {
+            this.shard = shard;
+            this.shardCount = shardCount;
+            this.bucketsPerShard = (BUCKETS - 1 - shard) / shardCount + 1;
+        }
+
+        @Override
+        public long nextId(Connection conn) throws SQLException {
+            var bucket = shard + shardCount * ThreadLocalRandom.current().nextInt(bucketsPerShard);
+            return (counters.nextId(conn) << BUCKET_BITS) | bucket;
+        }
+    }
+
+    /**
+     * Запрос к одному шарду.
+     */
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        T apply(UserDAO shard) throws SQLException;
+    }
+}
@@ -0,0 +1,77 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Работа {@link ShardedUserDAO} на нескольких БД H2 в памяти и перенос строк {@link ShardRebalancer}
+ * при переходе с {@value #SHARDS_BEFORE} на {@value #SHARDS_AFTER} шардов.
+ *
+ * <h2>Используемые БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_shard_0} ... {@code jdbc:h2:mem:hexlet_shard_5},
+ * у каждой свой {@link ConnectionPool}.
+ */
+public class ShardingDemo {
+    private static final int USERS = 100_000;
+    private static final int SHARDS_BEFORE = 4;
+    private static final int SHARDS_AFTER = 6;
+
+    public static void main(String[] args) throws SQLException {
+        var pools = new ArrayList<ConnectionPool>();
+        try {
+            for (var i = 0; i < SHARDS_AFTER; i++) {
+                pools.add(new ConnectionPoolBuilder()
+                        .withUrl("jdbc:h2:mem:hexlet_shard_" + i + ";DB_CLOSE_DELAY=-1")
+                        .withMaxSize(4)
+                        .build());
+            }
+            var before = pools.subList(0, SHARDS_BEFORE);
+            ShardedUserDAO.createSchema(before);
+
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User("user_" + i, "555" + i));
+            }
+            try (var sharded = new ShardedUserDAO(before)) {
+                System.out.println("saveAll on " + SHARDS_BEFORE + " shards: " + sharded.saveAll(users));
+                printDistribution(before);
+
+                var first = users.get(0);
+                System.out.printf("id %d -> bucket %d, shard %d%n", first.getId(),
+                        ShardedUserDAO.bucketOf(first.getId()), ShardedUserDAO.shardOf(first.getId(), SHARDS_BEFORE));
+                System.out.println("Prefix 'user_9999': " + sharded.findByUsernamePrefix("user_9999", 5).stream()
+                        .map(User::getName).toList());
+                System.out.println("First page ids: " + sharded.findPage(null, 5).users().stream()
+                        .map(User::getId).toList());
+            }
+
+            var stats = new ShardRebalancer(1_000).rebalance(before, pools);
+            System.out.println("Rebalance " + SHARDS_BEFORE + " -> " + SHARDS_AFTER + ": " + stats);
+            printDistribution(pools);
+
+            try (var sharded = new ShardedUserDAO(pools)) {
+                var ids = users.stream().map(User::getId).toList();
+                System.out.println("All users found after rebalance: " + (sharded.findAll(ids).size() == USERS));
+                var user = new User("after_rebalance", "000");
+                sharded.save(user);
+                System.out.println("New user " + user.getId() + " on shard "
+                        + ShardedUserDAO.shardOf(user.getId(), SHARDS_AFTER));
+            }
+        } finally {
+            pools.forEach(ConnectionPool::close);
+        }
+    }
+
+    private static void printDistribution(List<ConnectionPool> shards) throws SQLException {
+        var counts = new ArrayList<Long>();
+        for (var shard : shards) {
+            try (var conn = shard.getConnection(); var stmt = conn.createStatement();
+                 var rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                rs.next();
+                counts.add(rs.getLong(1));
+            }
+        }
+        System.out.println("Rows per shard: " + counts);
+    }
+}
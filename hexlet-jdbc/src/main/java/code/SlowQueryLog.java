@@ -0,0 +1,181 @@
+package code;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Журнал медленных запросов {@link UserDAO} с планом выполнения.
+ *
+ * <p>Если запрос выполнялся дольше порога, в локальный файл пишутся: время, операция, SQL, значения параметров
+ * и план H2. Например, полный проход по таблице без индекса по {@code username} сразу виден в плане
+ * как {@code tableScan}.
+ *
+ * <h2>Особенности:</h2>
+ * <ul>
+ *   <li>План для SELECT снимается через {@code EXPLAIN ANALYZE} (запрос выполняется повторно и показывает
+ *       реальное число прочитанных строк), для INSERT/UPDATE/DELETE/MERGE — через {@code EXPLAIN}, чтобы
+ *       не выполнять запись второй раз.</li>
+ *   <li>Снятие плана ограничено по частоте ({@code maxPlansPerMinute}), чтобы журнал не добавлял нагрузку
+ *       на уже перегруженную БД. Сверх лимита запрос записывается без плана.</li>
+ *   <li>Строковые параметры (имена, телефоны) можно маскировать — тогда в журнал попадает только их длина.</li>
+ *   <li>Файл ротируется по размеру: {@code slow.log} → {@code slow.log.1} → ... → {@code slow.log.<maxFiles>}.</li>
+ *   <li>Ошибки записи журнала не ломают операцию DAO — они только считаются ({@link #getWriteErrors()}).</li>
+ * </ul>
+ *
+ * <p>Создаётся через {@link SlowQueryLogBuilder} и подключается через {@link UserDAOBuilder#withSlowQueryLog(SlowQueryLog)}.
+ */
+public class SlowQueryLog {
+    private final Path file;
+    private final long thresholdNanos;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final boolean maskBinds;
+    private final long planIntervalNanos;
+
+    private final AtomicLong nextPlanAtNanos = new AtomicLong(System.nanoTime());
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder plansCaptured = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+
+    SlowQueryLog(Path file, long thresholdNanos, long maxFileBytes, int maxFiles, boolean maskBinds,
+                 int maxPlansPerMinute) {
+        this.file = file;
+        this.thresholdNanos = thresholdNanos;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.maskBinds = maskBinds;
+        this.planIntervalNanos = maxPlansPerMinute == 0 ? Long.MAX_VALUE : TimeUnit.MINUTES.toNanos(1) / maxPlansPerMinute;
+    }
+
+    /**
+     * @param nanos длительность запроса
+     * @return {@code true}, если запрос нужно записать в журнал
+     */
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Записывает медленный запрос и, если позволяет лимит, его план.
+     *
+     * @param operation операция DAO
+     * @param sql       шаблон запроса
+     * @param binds     значения параметров в порядке {@code ?}
+     * @param nanos     длительность запроса
+     * @param conn      соединение, на котором выполнялся запрос (для снятия плана)
+     */
+    public void record(DaoOperation operation, String sql, Object[] binds, long nanos, Connection conn) {
+        var entry = new StringBuilder(256)
+                .append(Instant.now()).append(' ').append(operation)
+                .append(String.format(" %.3f ms%n", nanos / 1_000_000.0))
+                .append("  sql:   ").append(sql).append(System.lineSeparator())
+                .append("  binds: ").append(formatBinds(binds)).append(System.lineSeparator())
+                .append("  plan:  ").append(capturePlan(sql, binds, conn)).append(System.lineSeparator());
+        write(entry.toString());
+        logged.increment();
+    }
+
+    /**
+     * @return сколько медленных запросов записано
+     */
+    public long getLogged() {
+        return logged.sum();
+    }
+
+    /**
+     * @return сколько планов снято
+     */
+    public long getPlansCaptured() {
+        return plansCaptured.sum();
+    }
+
+    /**
+     * @return сколько раз не удалось записать журнал
+     */
+    public long getWriteErrors() {
+        return writeErrors.sum();
+    }
+
+    private String capturePlan(String sql, Object[] binds, Connection conn) {
+        if (!tryAcquirePlanSlot()) {
+            return "skipped (rate limit)";
+        }
+        var explain = sql.stripLeading().regionMatches(true, 0, "SELECT", 0, 6) ? "EXPLAIN ANALYZE " : "EXPLAIN ";
+        try (var stmt = conn.prepareStatement(explain + sql)) {
+            for (var i = 0; i < binds.length; i++) {
+                stmt.setObject(i + 1, binds[i]);
+            }
+            var plan = new StringBuilder();
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+            }
+            plansCaptured.increment();
+            return plan.toString().replace("\n", System.lineSeparator() + "         ");
+        } catch (SQLException e) {
+            return "failed: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Разрешает не больше одного плана за {@code planIntervalNanos} без блокировок.
+     */
+    private boolean tryAcquirePlanSlot() {
+        if (planIntervalNanos == Long.MAX_VALUE) {
+            return false;
+        }
+        var now = System.nanoTime();
+        var next = nextPlanAtNanos.get();
+        return now - next >= 0 && nextPlanAtNanos.compareAndSet(next, now + planIntervalNanos);
+    }
+
+    private String formatBinds(Object[] binds) {
+        if (!maskBinds) {
+            return Arrays.deepToString(binds);
+        }
+        var masked = new Object[binds.length];
+        for (var i = 0; i < binds.length; i++) {
+            masked[i] = binds[i] instanceof String value ? "<masked:" + value.length() + ">" : binds[i];
+        }
+        return Arrays.deepToString(masked);
+    }
+
+    private synchronized void write(String entry) {
+        try {
+            if (Files.exists(file) && Files.size(file) >= maxFileBytes) {
+                rotate();
+            }
+            Files.writeString(file, entry, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            writeErrors.increment();
+        }
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotated(maxFiles));
+        for (var i = maxFiles - 1; i >= 1; i--) {
+            var source = rotated(i);
+            if (Files.exists(source)) {
+                Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,67 @@
+package code;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builder для {@link SlowQueryLog}.
+ *
+ * <pre>{@code
+ * var slowLog = new SlowQueryLogBuilder()
+ *         .withFile(Path.of("logs/slow-queries.log"))
+ *         .withThresholdMillis(50)
+ *         .withMaskBinds(true)
+ *         .build();
+ * }</pre>
+ */
+public class SlowQueryLogBuilder {
+    private Path file = Path.of("slow-queries.log");
+    private long thresholdMillis = 100;
+    private long maxFileBytes = 10L * 1024 * 1024;
+    private int maxFiles = 5;
+    private boolean maskBinds;
+    private int maxPlansPerMinute = 10;
+
+    public SlowQueryLogBuilder withFile(Path file) {
+        this.file = file;
+        return this;
+    }
+
+    public SlowQueryLogBuilder withThresholdMillis(long thresholdMillis) {
+        this.thresholdMillis = thresholdMillis;
+        return this;
+    }
+
+    public SlowQueryLogBuilder withMaxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+        return this;
+    }
+
+    public SlowQueryLogBuilder withMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+        return this;
+    }
+
+    public SlowQueryLogBuilder withMaskBinds(boolean maskBinds) {
+        this.maskBinds = maskBinds;
+        return this;
+    }
+
+    /**
+     * @param maxPlansPerMinute сколько планов можно снять в минуту; 0 — не снимать планы вовсе
+     */
+    public SlowQueryLogBuilder withMaxPlansPerMinute(int maxPlansPerMinute) {
+        this.maxPlansPerMinute = maxPlansPerMinute;
+        return this;
+    }
+
+    public SlowQueryLog build() {
+        Objects.requireNonNull(file, "Log file must not be null");
+        if (thresholdMillis < 0 || maxFileBytes <= 0 || maxFiles <= 0 || maxPlansPerMinute < 0) {
+            throw new IllegalArgumentException("Invalid slow query log settings");
+        }
+        return new SlowQueryLog(file, TimeUnit.MILLISECONDS.toNanos(thresholdMillis), maxFileBytes, maxFiles,
+                maskBinds, maxPlansPerMinute);
+    }
+}
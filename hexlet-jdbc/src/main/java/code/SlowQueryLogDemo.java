@@ -0,0 +1,64 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Демонстрация {@link SlowQueryLog} на таблице без индекса по {@code username}.
+ *
+ * <p>Таблица создаётся через {@link UserSchema#createTable(java.sql.Connection)}, без вторичных индексов, поэтому
+ * {@link UserDAO#findPageByUsername(String, Long, int)} сортирует всю таблицу. Такие запросы попадают
+ * в журнал вместе с планом, в котором видно {@code tableScan}. После создания индекса по {@code (username, id)}
+ * ({@link UserSchema#createIndexes(java.sql.Connection)}) тот же запрос укладывается в порог.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_slow}
+ */
+public class SlowQueryLogDemo {
+    private static final int USERS = 200_000;
+    private static final int PAGE_SIZE = 50;
+
+    public static void main(String[] args) throws SQLException, IOException {
+        var logFile = Files.createTempFile("slow-queries", ".log");
+        var slowLog = new SlowQueryLogBuilder()
+                .withFile(logFile)
+                .withThresholdMillis(5)
+                .withMaskBinds(true)
+                .withMaxPlansPerMinute(2)
+                .build();
+
+        try (var connection = DriverManager.getConnection("jdbc:h2:mem:hexlet_slow")) {
+            UserSchema.createTable(connection);
+
+            var userDAO = new UserDAOBuilder()
+                    .withConnection(connection)
+                    .withSlowQueryLog(slowLog)
+                    .build();
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User(String.format("user_%07d", i), "555" + i));
+            }
+            userDAO.saveAll(users);
+
+            var last = users.get(USERS / 2);
+            for (var r = 0; r < 10; r++) {
+                userDAO.findPageByUsername(last.getName(), last.getId(), PAGE_SIZE);
+            }
+            System.out.printf("Without index: %d slow queries, %d plans captured%n",
+                    slowLog.getLogged(), slowLog.getPlansCaptured());
+
+            UserSchema.createIndexes(connection);
+            var before = slowLog.getLogged();
+            for (var r = 0; r < 10; r++) {
+                userDAO.findPageByUsername(last.getName(), last.getId(), PAGE_SIZE);
+            }
+            System.out.printf("With index:    %d slow queries%n", slowLog.getLogged() - before);
+        }
+
+        System.out.println("Log " + logFile + ":");
+        System.out.println(Files.readString(logFile));
+    }
+}
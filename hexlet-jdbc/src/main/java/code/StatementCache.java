@@ -0,0 +1,135 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU-кэш подготовленных запросов ({@link PreparedStatement}) для одного соединения.
+ *
+ * <p>Каждый вызов {@link Connection#prepareStatement(String)} заставляет БД заново разобрать
+ * и спланировать SQL. Если приложение выполняет одни и те же запросы, выгоднее подготовить
+ * их один раз и переиспользовать.
+ *
+ * <h2>Особенности:</h2>
+ * <ul>
+ *   <li>Ключ кэша — текст SQL и режим возврата сгенерированных ключей.</li>
+ *   <li>Размер ограничен: при переполнении вытесняется давно не использованный запрос, и он закрывается.</li>
+ *   <li>Запросы, полученные из кэша, <b>нельзя</b> закрывать вызывающему коду — ими владеет кэш.</li>
+ *   <li>Кэш не потокобезопасен, как и само соединение: один кэш — один поток в каждый момент времени.</li>
+ * </ul>
+ */
+public class StatementCache implements AutoCloseable {
+    private final Connection connection;
+    private final Counters counters;
+    private final Map<Key, PreparedStatement> statements;
+
+    /**
+     * Создаёт кэш с собственными счётчиками.
+     *
+     * @param connection соединение, для которого подготавливаются запросы
+     * @param capacity   максимальное число хранимых запросов (больше нуля)
+     */
+    public StatementCache(Connection connection, int capacity) {
+        this(connection, capacity, new Counters());
+    }
+
+    StatementCache(Connection connection, int capacity, Counters counters) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Statement cache capacity must be positive: " + capacity);
+        }
+        this.connection = Objects.requireNonNull(connection, "Connection must not be null");
+        this.counters = counters;
+        this.statements = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    counters.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param sql текст запроса
+     * @return подготовленный запрос из кэша или новый
+     * @throws SQLException при ошибках подготовки запроса
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * @param sql               текст запроса
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} или {@link Statement#NO_GENERATED_KEYS}
+     * @return подготовленный запрос из кэша или новый
+     * @throws SQLException при ошибках подготовки запроса
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        var key = new Key(sql, autoGeneratedKeys);
+        var stmt = statements.get(key);
+        if (stmt != null && !stmt.isClosed()) {
+            counters.hits.increment();
+            return stmt;
+        }
+        counters.misses.increment();
+        stmt = connection.prepareStatement(sql, autoGeneratedKeys);
+        statements.put(key, stmt);
+        return stmt;
+    }
+
+    /**
+     * @return количество запросов в кэше
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * @return статистика попаданий и промахов
+     */
+    public StatementCacheStats getStats() {
+        return counters.snapshot();
+    }
+
+    /**
+     * Закрывает все закэшированные запросы. Само соединение не закрывается.
+     */
+    @Override
+    public void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+            // запрос больше не используется
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    /**
+     * Счётчики, которые можно разделить между несколькими кэшами (например, по одному кэшу на соединение пула).
+     */
+    static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        StatementCacheStats snapshot() {
+            return new StatementCacheStats(hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+}
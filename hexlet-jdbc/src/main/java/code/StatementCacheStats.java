@@ -0,0 +1,19 @@
+package code;
+
+/**
+ * Снимок статистики {@link StatementCache}.
+ *
+ * @param hits      сколько раз подготовленный запрос был взят из кэша
+ * @param misses    сколько раз запрос пришлось подготавливать заново
+ * @param evictions сколько запросов было вытеснено и закрыто
+ */
+public record StatementCacheStats(long hits, long misses, long evictions) {
+
+    /**
+     * @return доля попаданий в кэш от 0 до 1
+     */
+    public double hitRatio() {
+        var total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,217 @@
+package code;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Источник соединений, закрепляющий за каждым потоком собственное физическое соединение.
+ *
+ * <p>Альтернатива {@link ConnectionPool} для фиксированного набора рабочих потоков (например, пула
+ * обработчиков запросов по числу ядер): поток получает своё соединение при первом вызове
+ * {@link #getConnection()} и дальше переиспользует его, не конкурируя с другими потоками
+ * за семафор и очередь свободных соединений. Вместе с {@link UserDAO#UserDAO(DataSource)} даёт DAO,
+ * который можно делить между потоками: каждый поток работает со своим соединением и своим
+ * кэшем подготовленных запросов.
+ *
+ * <h2>Особенности:</h2>
+ * <ul>
+ *   <li>{@link Connection#close()} на выданном соединении не закрывает его, а откатывает незавершённую
+ *       транзакцию и возвращает {@code autoCommit = true}, как при возврате в пул.</li>
+ *   <li>Соединения завершившихся потоков закрываются при следующем открытии соединения
+ *       и при {@link #close()}.</li>
+ *   <li>Число соединений равно числу потоков, поэтому источник не подходит для неограниченного
+ *       числа потоков (например, виртуальных) — для них нужен {@link ConnectionPool}.</li>
+ * </ul>
+ */
+public class ThreadConfinedDataSource implements DataSource, AutoCloseable {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Map<Thread, Connection> connections = new ConcurrentHashMap<>();
+    private final ThreadLocal<Connection> current = new ThreadLocal<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private PrintWriter logWriter;
+
+    /**
+     * @param url JDBC URL базы данных, например {@code jdbc:h2:mem:hexlet;DB_CLOSE_DELAY=-1}
+     */
+    public ThreadConfinedDataSource(String url) {
+        this(url, "", "");
+    }
+
+    /**
+     * @param url      JDBC URL базы данных
+     * @param user     имя пользователя БД
+     * @param password пароль пользователя БД
+     */
+    public ThreadConfinedDataSource(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Возвращает соединение текущего потока, открывая его при первом обращении.
+     *
+     * @return соединение; закрывать его можно и нужно — физически оно останется открытым
+     * @throws SQLException если источник закрыт или соединение не удалось открыть
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Data source is closed");
+        }
+        var physical = current.get();
+        if (physical == null || physical.isClosed()) {
+            closeAbandoned();
+            physical = DriverManager.getConnection(url, user, password);
+            current.set(physical);
+            connections.put(Thread.currentThread(), physical);
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new Confined(physical));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are fixed at construction time");
+    }
+
+    /**
+     * @return количество открытых соединений (по одному на поток)
+     */
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * Закрывает соединения всех потоков.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            connections.values().forEach(ThreadConfinedDataSource::closeQuietly);
+            connections.clear();
+        }
+    }
+
+    private void closeAbandoned() {
+        connections.entrySet().removeIf(entry -> {
+            if (entry.getKey().isAlive()) {
+                return false;
+            }
+            closeQuietly(entry.getValue());
+            return true;
+        });
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // соединение всё равно выбрасываем
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Обработчик вызовов на выданном прокси: {@code close()} только сбрасывает состояние соединения.
+     */
+    private static final class Confined implements InvocationHandler {
+        private final Connection physical;
+        private boolean returned;
+
+        Confined(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        if (!physical.isClosed() && !physical.getAutoCommit()) {
+                            physical.rollback();
+                            physical.setAutoCommit(true);
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "unwrap":
+                    // кэш подготовленных запросов в UserDAO привязывается к физическому соединению
+                    if (args[0] == Connection.class) {
+                        return physical;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ThreadConfined" + physical;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has been closed");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package code;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Стоимость коммитов: {@value #REQUESTS} "запросов", каждый из которых меняет {@value #USERS_PER_REQUEST}
+ * пользователей, — построчно в режиме auto-commit и через {@link UserUnitOfWork}.
+ *
+ * <p>Каждый запрос вставляет треть пользователей, обновляет треть ранее вставленных и удаляет остальных.
+ * В режиме auto-commit это {@value #USERS_PER_REQUEST} транзакций на запрос, в единице работы — одна.
+ * В конце показан откат: единица работы с конфликтом версий не оставляет в БД ничего.
+ *
+ * <h2>Используемая БД:</h2>
+ * Файловая H2 во временном каталоге — там коммит означает запись журнала на диск.
+ */
+public class UnitOfWorkDemo {
+    private static final int REQUESTS = 200;
+    private static final int USERS_PER_REQUEST = 48;
+
+    public static void main(String[] args) throws SQLException, IOException {
+        var directory = Files.createTempDirectory("hexlet-uow");
+        try (var pool = new ConnectionPoolBuilder().withUrl(DatabaseBootstrap.fileUrl(directory.resolve("users")))
+                .withMaxSize(1).build()) {
+            try (var conn = pool.getConnection()) {
+                UserSchema.create(conn);
+            }
+            var userDAO = new UserDAOBuilder().withDataSource(pool).withOptimisticLocking(true).build();
+
+            var start = System.nanoTime();
+            for (var r = 0; r < REQUESTS; r++) {
+                var batch = seed(userDAO, "auto_" + r);
+                for (var i = 0; i < USERS_PER_REQUEST / 3; i++) {
+                    userDAO.save(new User("auto_" + r + "_new_" + i, "555" + i));
+                    batch.get(i).setPhone("777" + i);
+                    userDAO.save(batch.get(i));
+                    userDAO.delete(batch.get(batch.size() - 1 - i));
+                }
+            }
+            System.out.printf("auto-commit:  %.1f ms%n", (System.nanoTime() - start) / 1_000_000.0);
+
+            start = System.nanoTime();
+            UnitOfWorkStats last = null;
+            for (var r = 0; r < REQUESTS; r++) {
+                var batch = seed(userDAO, "uow_" + r);
+                try (var work = userDAO.beginUnitOfWork(Connection.TRANSACTION_READ_COMMITTED)) {
+                    for (var i = 0; i < USERS_PER_REQUEST / 3; i++) {
+                        work.save(new User("uow_" + r + "_new_" + i, "555" + i));
+                        batch.get(i).setPhone("777" + i);
+                        work.save(batch.get(i));
+                        work.delete(batch.get(batch.size() - 1 - i));
+                    }
+                    last = work.commit();
+                }
+            }
+            System.out.printf("unit of work: %.1f ms, last request: %s%n",
+                    (System.nanoTime() - start) / 1_000_000.0, last);
+
+            // откат: второй пользователь изменён в обход единицы работы, его версия устарела
+            var batch = seed(userDAO, "rollback");
+            var stale = userDAO.find(batch.get(1).getId()).orElseThrow();
+            batch.get(1).setName("changed_elsewhere");
+            userDAO.save(batch.get(1));
+            var fresh = new User("never_inserted", "000");
+            try (var work = userDAO.beginUnitOfWork()) {
+                work.save(fresh);
+                batch.get(0).setPhone("111");
+                work.save(batch.get(0));
+                stale.setPhone("222");
+                work.save(stale);
+                work.commit();
+            } catch (OptimisticLockException e) {
+                System.out.println("Rolled back: " + e.getMessage());
+                System.out.println("  new user id: " + fresh.getId() + ", first user in DB: "
+                        + userDAO.find(batch.get(0).getId()).orElseThrow().getPhone());
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Пользователи, которых запрос застаёт в БД.
+     */
+    private static List<User> seed(UserDAO userDAO, String prefix) throws SQLException {
+        var users = new ArrayList<User>(USERS_PER_REQUEST);
+        for (var i = 0; i < USERS_PER_REQUEST; i++) {
+            users.add(new User(prefix + "_" + i, "555" + i));
+        }
+        userDAO.saveAll(users);
+        return users;
+    }
+}
@@ -0,0 +1,28 @@
+package code;
+
+/**
+ * Итоги {@link UserUnitOfWork#commit()}.
+ *
+ * @param inserted     количество вставленных строк
+ * @param updated      количество обновлённых строк
+ * @param deleted      количество удалённых строк
+ * @param skipped      количество пользователей, не записанных, потому что они не изменились
+ * @param batches      сколько пакетных запросов отправлено в БД за одну транзакцию
+ * @param elapsedNanos затраченное время в наносекундах, включая коммит
+ */
+public record UnitOfWorkStats(int inserted, int updated, int deleted, int skipped, int batches, long elapsedNanos) {
+
+    /**
+     * @return общее количество записанных строк
+     */
+    public int rows() {
+        return inserted + updated + deleted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows (%d inserted, %d updated, %d deleted, %d unchanged skipped) "
+                        + "in %d batches and 1 commit, %.1f ms",
+                rows(), inserted, updated, deleted, skipped, batches, elapsedNanos / 1_000_000.0);
+    }
+}
@@ -1,5 +1,7 @@
 package code;
 
+import java.util.Objects;
+
 /**
  * Модель данных, представляющая пользователя в системе.
  *
@@ -11,6 +13,10 @@ package code;
  *   <li>Содержит поля, соответствующие колонкам таблицы {@code users}.</li>
  *   <li>Имеет конструктор по умолчанию (требуется для некоторых фреймворков и ручного маппинга).</li>
  *   <li>Поддерживает установку/получение {@code id}, который генерируется БД при вставке.</li>
+ *   <li>Отслеживает изменения (dirty tracking): после загрузки или сохранения через {@link UserDAO}
+ *       объект помнит, какие поля менялись, и DAO записывает только их, а неизменённый объект не пишет вовсе.</li>
+ *   <li>Хранит версию строки ({@link #getVersion()}), с которой был загружен, — по ней DAO в режиме
+ *       оптимистической блокировки обнаруживает, что строку успели изменить другие.</li>
  * </ul>
  *
  * <h2>Замечание:</h2>
@@ -21,9 +27,19 @@ package code;
  * </ul>
  */
 public class User {
+    private static final int NAME_DIRTY = 1;
+    private static final int PHONE_DIRTY = 2;
+
     private Long id;
     private String name;
     private String phone;
+    private long version;
+
+    /**
+     * {@code true}, если состояние объекта совпадает со строкой в БД на момент последней загрузки или сохранения.
+     */
+    private boolean tracked;
+    private int dirtyFields;
 
     public User(String name, String phone) {
         this.name = name;
@@ -45,6 +61,9 @@ public class User {
     }
 
     public void setName(String name) {
+        if (!Objects.equals(this.name, name)) {
+            dirtyFields |= NAME_DIRTY;
+        }
         this.name = name;
     }
 
@@ -53,6 +72,115 @@ public class User {
     }
 
     public void setPhone(String phone) {
+        if (!Objects.equals(this.phone, phone)) {
+            dirtyFields |= PHONE_DIRTY;
+        }
         this.phone = phone;
     }
+
+    /**
+     * @return версия строки, с которой объект был загружен (0 — у только что вставленной строки);
+     *         {@link UserDAO} увеличивает её и при каждом обновлении
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Задаёт версию, с которой объект будет сравниваться при сохранении. Нужен для объектов, собранных вне DAO
+     * (например, из формы, в которую версия была передана при чтении).
+     *
+     * @param version версия строки, которую видел клиент
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @return {@code true}, если объект загружен или сохранён через DAO и с тех пор изменения отслеживаются
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * @return {@code true}, если объект не отслеживается или хотя бы одно поле изменилось после загрузки
+     */
+    public boolean isDirty() {
+        return !tracked || dirtyFields != 0;
+    }
+
+    boolean isNameDirty() {
+        return !tracked || (dirtyFields & NAME_DIRTY) != 0;
+    }
+
+    boolean isPhoneDirty() {
+        return !tracked || (dirtyFields & PHONE_DIRTY) != 0;
+    }
+
+    /**
+     * Отмечает, что состояние объекта совпадает со строкой в БД. Вызывается DAO после загрузки и сохранения.
+     */
+    void markClean() {
+        tracked = true;
+        dirtyFields = 0;
+    }
+
+    /**
+     * @return копия объекта вместе с состоянием отслеживания изменений
+     */
+    User copy() {
+        var copy = new User(name, phone);
+        copy.id = id;
+        copy.version = version;
+        copy.tracked = tracked;
+        copy.dirtyFields = dirtyFields;
+        return copy;
+    }
+
+    /**
+     * Добавляет к изменённым полям этого объекта изменённые поля более старой версии того же пользователя,
+     * чтобы при записи только последней версии не потерялись изменения предыдущих. Поле, которое изменено
+     * только в старой версии, получает её значение; изменённое здесь остаётся как есть.
+     *
+     * @param older предыдущая, ещё не записанная версия
+     */
+    void absorbChanges(User older) {
+        if (tracked && older.tracked) {
+            if ((older.dirtyFields & NAME_DIRTY) != 0 && (dirtyFields & NAME_DIRTY) == 0) {
+                name = older.name;
+            }
+            if ((older.dirtyFields & PHONE_DIRTY) != 0 && (dirtyFields & PHONE_DIRTY) == 0) {
+                phone = older.phone;
+            }
+        }
+        tracked = tracked && older.tracked;
+        dirtyFields |= older.dirtyFields;
+    }
+
+    /**
+     * Переносит изменённые поля этого объекта на более свежую версию того же пользователя из БД.
+     * Поля, изменённые и здесь, и в БД, получают значение этого объекта; остальные остаются как в БД.
+     *
+     * @param latest пользователь, только что загруженный через DAO
+     */
+    void rebaseOnto(User latest) {
+        if (isNameDirty()) {
+            latest.setName(name);
+        }
+        if (isPhoneDirty()) {
+            latest.setPhone(phone);
+        }
+    }
+
+    /**
+     * Принимает состояние объекта, успешно записанного вместо этого (см. {@link #rebaseOnto(User)}).
+     */
+    void adopt(User saved) {
+        name = saved.name;
+        phone = saved.phone;
+        version = saved.version;
+        tracked = saved.tracked;
+        dirtyFields = saved.dirtyFields;
+    }
 }
@@ -0,0 +1,97 @@
+package code;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Сравнение чтения пользователей напрямую из {@link UserDAO} и через {@link CachingUserRepository}
+ * при нагрузке, распределённой по закону Ципфа (малая доля "горячих" пользователей получает
+ * большую часть запросов).
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_cache}, соединения из {@link ConnectionPool}.
+ */
+public class UserCacheDemo {
+    private static final int USERS = 100_000;
+    private static final int THREADS = 4;
+    private static final int READS_PER_THREAD = 200_000;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    public static void main(String[] args) throws Exception {
+        try (var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:hexlet_cache;DB_CLOSE_DELAY=-1")
+                .withMaxSize(THREADS).build()) {
+            try (var connection = pool.getConnection()) {
+                UserSchema.createTable(connection);
+            }
+
+            var userDAO = new UserDAO(pool);
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User("user_" + i, "555" + i));
+            }
+            userDAO.saveAll(users);
+            var ids = users.stream().mapToLong(User::getId).toArray();
+            var zipf = zipfCdf(USERS, ZIPF_EXPONENT);
+
+            var cached = new CachingUserRepository(userDAO, 10_000, Duration.ofMinutes(5));
+            var executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                System.out.printf("UserDAO:               %,.0f reads/sec%n", run(executor, userDAO, ids, zipf));
+                System.out.printf("CachingUserRepository: %,.0f reads/sec%n", run(executor, cached, ids, zipf));
+                System.out.println("Cache: " + cached.getStats());
+                System.out.printf("Hit ratio: %.3f, average load: %.1f us%n",
+                        cached.getStats().hitRatio(), cached.getStats().averageLoadMicros());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static double run(ExecutorService executor, UserRepository repository, long[] ids, double[] zipf)
+            throws Exception {
+        var tasks = new ArrayList<Future<?>>();
+        var start = System.nanoTime();
+        for (var t = 0; t < THREADS; t++) {
+            var seed = t;
+            tasks.add(executor.submit(() -> {
+                var random = new Random(seed);
+                for (var i = 0; i < READS_PER_THREAD; i++) {
+                    repository.find(ids[sampleZipf(zipf, random)]);
+                }
+                return null;
+            }));
+        }
+        for (var task : tasks) {
+            task.get();
+        }
+        var elapsed = System.nanoTime() - start;
+        return (double) THREADS * READS_PER_THREAD * 1_000_000_000L / elapsed;
+    }
+
+    /**
+     * Функция распределения Ципфа: вероятность ранга {@code k} пропорциональна {@code 1 / k^s}.
+     */
+    private static double[] zipfCdf(int n, double s) {
+        var cdf = new double[n];
+        var sum = 0.0;
+        for (var k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, s);
+            cdf[k - 1] = sum;
+        }
+        for (var k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sampleZipf(double[] cdf, Random random) {
+        var index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+}
@@ -0,0 +1,24 @@
+package code;
+
+import java.time.Instant;
+
+/**
+ * Одно изменение пользователя из журнала {@link ChangeFeed}.
+ *
+ * @param seq       порядковый номер изменения; служит водяной меткой для продолжения чтения
+ * @param userId    ID изменённого пользователя
+ * @param operation вид изменения
+ * @param username  имя после изменения или {@code null} для удаления
+ * @param phone     телефон после изменения или {@code null} для удаления
+ * @param changedAt время начала транзакции, в которой произошло изменение
+ */
+public record UserChange(long seq, long userId, ChangeFeed.Operation operation, String username, String phone,
+                         Instant changedAt) {
+
+    /**
+     * @return {@code true}, если пользователь удалён и его нужно убрать из индекса или кэша
+     */
+    public boolean isTombstone() {
+        return operation == ChangeFeed.Operation.DELETE;
+    }
+}
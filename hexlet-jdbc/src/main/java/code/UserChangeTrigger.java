@@ -0,0 +1,79 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import org.h2.api.Trigger;
+
+/**
+ * Триггер H2 на таблице {@code users}, который записывает каждое изменение строки в журнал {@code users_changes}.
+ *
+ * <p>Срабатывает после INSERT, UPDATE и DELETE в той же транзакции, что и само изменение, поэтому журнал
+ * видит все пути записи: {@link UserDAO}, пакетные вставки, CSV-загрузку, MERGE и прямой SQL.
+ * Удаление записывается как tombstone — операция {@code D} с ID удалённого пользователя.
+ * UPDATE, не изменивший ни имени, ни телефона, в журнал не попадает.
+ *
+ * <p>Устанавливается через {@link ChangeFeed#install(Connection)}.
+ */
+public class UserChangeTrigger implements Trigger {
+    private static final String INSERT_CHANGE_SQL = "INSERT INTO users_changes (user_id, op, username, phone) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String COLUMN_POSITION_SQL = "SELECT ORDINAL_POSITION FROM INFORMATION_SCHEMA.COLUMNS "
+            + "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+
+    private int idColumn;
+    private int usernameColumn;
+    private int phoneColumn;
+
+    /**
+     * Запоминает позиции колонок, чтобы триггер не зависел от порядка и числа колонок таблицы.
+     */
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                     int type) throws SQLException {
+        idColumn = columnIndex(conn, schemaName, tableName, "ID");
+        usernameColumn = columnIndex(conn, schemaName, tableName, "USERNAME");
+        phoneColumn = columnIndex(conn, schemaName, tableName, "PHONE");
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        ChangeFeed.Operation operation;
+        Object[] row;
+        if (oldRow == null) {
+            operation = ChangeFeed.Operation.INSERT;
+            row = newRow;
+        } else if (newRow == null) {
+            operation = ChangeFeed.Operation.DELETE;
+            row = oldRow;
+        } else {
+            if (Objects.equals(oldRow[usernameColumn], newRow[usernameColumn])
+                    && Objects.equals(oldRow[phoneColumn], newRow[phoneColumn])) {
+                return;
+            }
+            operation = ChangeFeed.Operation.UPDATE;
+            row = newRow;
+        }
+        try (var stmt = conn.prepareStatement(INSERT_CHANGE_SQL)) {
+            stmt.setLong(1, ((Number) row[idColumn]).longValue());
+            stmt.setString(2, operation.code());
+            stmt.setObject(3, operation == ChangeFeed.Operation.DELETE ? null : row[usernameColumn]);
+            stmt.setObject(4, operation == ChangeFeed.Operation.DELETE ? null : row[phoneColumn]);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static int columnIndex(Connection conn, String schema, String table, String column) throws SQLException {
+        try (var stmt = conn.prepareStatement(COLUMN_POSITION_SQL)) {
+            stmt.setString(1, schema);
+            stmt.setString(2, table);
+            stmt.setString(3, column);
+            try (var rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Column " + column + " not found in " + schema + "." + table);
+                }
+                return rs.getInt(1) - 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,480 @@
+package code;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+
+/**
+ * Потоковый импорт и экспорт таблицы {@code users} в CSV с колонками {@code username,phone}.
+ *
+ * <p>Нужен для загрузки миллионов строк, где {@link UserDAO#save(User)} на строку слишком медленный.
+ * Память не зависит от размера файла: файл читается и пишется через {@link FileChannel} буферами
+ * фиксированного размера, а в БД строки уходят пакетами по {@code batchSize}.
+ *
+ * <h2>Импорт:</h2>
+ * <ul>
+ *   <li>{@link #importCsv(Path, Consumer)} разбирает байты буфера конечным автоматом — без строк на каждую
+ *       линию, без {@code split} и промежуточных массивов; строка создаётся только для значения поля,
+ *       которое передаётся в {@link PreparedStatement}. Вставка — пакетами через {@code addBatch}/{@code executeBatch},
+ *       по транзакции на пакет.</li>
+ *   <li>{@link #importCsvRead(Path, Consumer)} отдаёт разбор файла самой H2 ({@code CSVREAD}), а готовые значения
+ *       читает курсором и вставляет теми же пакетами. Файл должен быть доступен процессу БД.</li>
+ * </ul>
+ *
+ * <h2>Формат CSV:</h2>
+ * <ul>
+ *   <li>Кодировка UTF-8, разделитель — запятая, строки — {@code \n} или {@code \r\n}.</li>
+ *   <li>Поля с запятой, кавычкой или переводом строки заключаются в кавычки, кавычка внутри удваивается.</li>
+ *   <li>Пустое поле без кавычек — {@code NULL}, {@code ""} — пустая строка.</li>
+ *   <li>Первая строка {@code username,phone} считается заголовком и пропускается; экспорт всегда пишет заголовок.</li>
+ * </ul>
+ *
+ * <p>Ход работы сообщается слушателю после каждого пакета ({@link CsvTransferStats}).
+ */
+public class UserCsvTransfer {
+    /**
+     * Размер пакета вставки и порции чтения курсора по умолчанию.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    /**
+     * Размер буфера чтения/записи файла по умолчанию.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final String INSERT_SQL = "INSERT INTO users (username, phone) VALUES (?, ?)";
+    private static final String CSVREAD_SQL = "SELECT username, phone FROM CSVREAD(%s, NULL, 'charset=UTF-8')";
+    private static final String EXPORT_SQL = "SELECT username, phone FROM users ORDER BY id";
+    private static final String HEADER = "username,phone";
+
+    private final DataSource dataSource;
+    private final int batchSize;
+    private final int bufferSize;
+
+    /**
+     * @param dataSource источник соединений (не null)
+     */
+    public UserCsvTransfer(DataSource dataSource) {
+        this(dataSource, DEFAULT_BATCH_SIZE, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param dataSource источник соединений (не null)
+     * @param batchSize  количество строк в одном пакете (больше нуля)
+     * @param bufferSize размер буфера файла в байтах (больше нуля)
+     */
+    public UserCsvTransfer(DataSource dataSource, int batchSize, int bufferSize) {
+        if (batchSize <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Batch size and buffer size must be positive: "
+                    + batchSize + ", " + bufferSize);
+        }
+        this.dataSource = Objects.requireNonNull(dataSource, "DataSource must not be null");
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Загружает пользователей из CSV пакетными вставками.
+     *
+     * <p>Каждый пакет коммитится отдельно: при ошибке откатывается только текущий пакет,
+     * а уже загруженные строки остаются в таблице.
+     *
+     * @param file     CSV-файл
+     * @param progress слушатель хода загрузки или {@code null}
+     * @return итоги загрузки
+     * @throws IOException              при ошибках чтения файла
+     * @throws SQLException             при ошибках работы с БД
+     * @throws IllegalArgumentException если в строке файла не два поля
+     */
+    public CsvTransferStats importCsv(Path file, Consumer<CsvTransferStats> progress) throws IOException, SQLException {
+        var start = System.nanoTime();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ);
+             var conn = dataSource.getConnection()) {
+            var autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (var stmt = conn.prepareStatement(INSERT_SQL)) {
+                var parser = new CsvParser(conn, stmt, progress, start);
+                var buffer = ByteBuffer.allocateDirect(bufferSize);
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    parser.bytes += buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        parser.accept(buffer.get());
+                    }
+                    buffer.clear();
+                }
+                parser.finish();
+                return new CsvTransferStats(parser.rows, parser.bytes, System.nanoTime() - start);
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Загружает пользователей из CSV, разобранного силами H2 ({@code SELECT ... FROM CSVREAD}).
+     *
+     * <p>Файл должен начинаться с заголовка {@code username,phone} и лежать там, где его видит процесс БД.
+     * Имя файла H2 нужно уже при подготовке запроса, поэтому оно подставляется в текст запроса литералом,
+     * а не параметром. Строки читаются однонаправленным курсором и вставляются пакетами по {@code batchSize},
+     * каждый пакет — в отдельной транзакции, как в {@link #importCsv(Path, Consumer)}. Один
+     * {@code INSERT ... SELECT} на весь файл на миллионе строк оказался не быстрее и не позволяет сообщать прогресс.
+     *
+     * <p>Файл читает H2, поэтому в промежуточной статистике {@code bytes} равен нулю; размер файла есть
+     * только в итоговой. H2 сначала материализует результат {@code CSVREAD} (большой — во временном файле),
+     * поэтому первый отчёт приходит с задержкой.
+     *
+     * @param file     CSV-файл; путь не должен содержать одинарных кавычек
+     * @param progress слушатель хода загрузки или {@code null}
+     * @return итоги загрузки
+     * @throws IOException              если не удалось узнать размер файла
+     * @throws SQLException             при ошибках работы с БД
+     * @throws IllegalArgumentException если путь к файлу содержит одинарную кавычку
+     */
+    public CsvTransferStats importCsvRead(Path file, Consumer<CsvTransferStats> progress)
+            throws IOException, SQLException {
+        var start = System.nanoTime();
+        var sql = String.format(CSVREAD_SQL, literal(file));
+        try (var conn = dataSource.getConnection()) {
+            var autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (var query = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 var insert = conn.prepareStatement(INSERT_SQL)) {
+                query.setFetchSize(batchSize);
+                long rows = 0;
+                var batched = 0;
+                try (var rs = query.executeQuery(sql)) {
+                    while (rs.next()) {
+                        insert.setString(1, rs.getString(1));
+                        insert.setString(2, rs.getString(2));
+                        insert.addBatch();
+                        if (++batched == batchSize) {
+                            commitBatch(conn, insert);
+                            rows += batched;
+                            batched = 0;
+                            if (progress != null) {
+                                progress.accept(new CsvTransferStats(rows, 0, System.nanoTime() - start));
+                            }
+                        }
+                    }
+                }
+                if (batched > 0) {
+                    commitBatch(conn, insert);
+                    rows += batched;
+                }
+                var stats = new CsvTransferStats(rows, Files.size(file), System.nanoTime() - start);
+                if (progress != null) {
+                    progress.accept(stats);
+                }
+                return stats;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Выгружает всех пользователей в CSV, упорядоченных по ID.
+     *
+     * <p>Строки читаются однонаправленным курсором и кодируются в UTF-8 через буферы фиксированного размера.
+     *
+     * @param file     CSV-файл; перезаписывается
+     * @param progress слушатель хода выгрузки или {@code null}
+     * @return итоги выгрузки
+     * @throws IOException  при ошибках записи файла
+     * @throws SQLException при ошибках работы с БД
+     */
+    public CsvTransferStats exportCsv(Path file, Consumer<CsvTransferStats> progress) throws IOException, SQLException {
+        var start = System.nanoTime();
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             var conn = dataSource.getConnection();
+             var stmt = conn.prepareStatement(EXPORT_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(batchSize);
+            var writer = new CsvWriter(channel);
+            writer.writeRaw(HEADER);
+            writer.endRow();
+            long rows = 0;
+            try (var rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    writer.writeField(rs.getString(1));
+                    writer.writeRaw(",");
+                    writer.writeField(rs.getString(2));
+                    writer.endRow();
+                    if (++rows % batchSize == 0 && progress != null) {
+                        progress.accept(new CsvTransferStats(rows, writer.bytes, System.nanoTime() - start));
+                    }
+                }
+            }
+            writer.close();
+            var stats = new CsvTransferStats(rows, writer.bytes, System.nanoTime() - start);
+            if (progress != null) {
+                progress.accept(stats);
+            }
+            return stats;
+        }
+    }
+
+    private static void commitBatch(Connection conn, PreparedStatement stmt) throws SQLException {
+        stmt.executeBatch();
+        conn.commit();
+    }
+
+    /**
+     * Путь к файлу строковым литералом SQL. Пути с одинарной кавычкой отклоняются, а не экранируются:
+     * текст запроса собирается из внешних данных, и лишняя кавычка не должна менять его смысл.
+     */
+    private static String literal(Path file) {
+        var path = file.toAbsolutePath().toString();
+        if (path.indexOf('\'') >= 0) {
+            throw new IllegalArgumentException("CSV path must not contain single quotes: " + path);
+        }
+        return "'" + path + "'";
+    }
+
+    /**
+     * Разбор CSV по одному байту с пакетной вставкой готовых строк.
+     */
+    private final class CsvParser {
+        private final Connection conn;
+        private final PreparedStatement stmt;
+        private final Consumer<CsvTransferStats> progress;
+        private final long start;
+
+        private byte[] field = new byte[256];
+        private int fieldLength;
+        private boolean quoted;
+        private boolean inQuotes;
+        private boolean quotePending;
+        private final String[] values = new String[2];
+        private int fieldIndex;
+        private long line = 1;
+        private boolean headerChecked;
+        private int batched;
+        private long rows;
+        private long bytes;
+
+        CsvParser(Connection conn, PreparedStatement stmt, Consumer<CsvTransferStats> progress, long start) {
+            this.conn = conn;
+            this.stmt = stmt;
+            this.progress = progress;
+            this.start = start;
+        }
+
+        void accept(byte b) throws SQLException {
+            if (inQuotes) {
+                if (b == '"') {
+                    inQuotes = false;
+                    quotePending = true;
+                } else {
+                    append(b);
+                }
+                return;
+            }
+            if (quotePending) {
+                quotePending = false;
+                if (b == '"') {
+                    // удвоенная кавычка внутри поля в кавычках
+                    append(b);
+                    inQuotes = true;
+                    return;
+                }
+            }
+            switch (b) {
+                case '"' -> {
+                    inQuotes = true;
+                    quoted = true;
+                }
+                case ',' -> endField();
+                case '\n' -> endRow();
+                case '\r' -> {
+                    // часть перевода строки \r\n
+                }
+                default -> append(b);
+            }
+        }
+
+        void finish() throws SQLException {
+            if (inQuotes) {
+                throw new IllegalArgumentException("Line " + line + ": unterminated quoted field");
+            }
+            endRow();
+            flushBatch();
+        }
+
+        private void append(byte b) {
+            if (fieldLength == field.length) {
+                field = Arrays.copyOf(field, field.length * 2);
+            }
+            field[fieldLength++] = b;
+        }
+
+        private void endField() {
+            if (fieldIndex >= values.length) {
+                throw new IllegalArgumentException("Line " + line + ": expected 2 fields, got more");
+            }
+            values[fieldIndex++] = fieldLength == 0 && !quoted
+                    ? null
+                    : new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+            fieldLength = 0;
+            quoted = false;
+        }
+
+        private void endRow() throws SQLException {
+            if (fieldIndex == 0 && fieldLength == 0 && !quoted) {
+                // пустая строка
+                line++;
+                return;
+            }
+            endField();
+            if (fieldIndex != values.length) {
+                throw new IllegalArgumentException("Line " + line + ": expected 2 fields, got " + fieldIndex);
+            }
+            fieldIndex = 0;
+            line++;
+            if (!headerChecked) {
+                headerChecked = true;
+                if ("username".equalsIgnoreCase(values[0]) && "phone".equalsIgnoreCase(values[1])) {
+                    return;
+                }
+            }
+            stmt.setString(1, values[0]);
+            stmt.setString(2, values[1]);
+            stmt.addBatch();
+            if (++batched == batchSize) {
+                flushBatch();
+            }
+        }
+
+        private void flushBatch() throws SQLException {
+            if (batched == 0) {
+                return;
+            }
+            stmt.executeBatch();
+            conn.commit();
+            rows += batched;
+            batched = 0;
+            if (progress != null) {
+                progress.accept(new CsvTransferStats(rows, bytes, System.nanoTime() - start));
+            }
+        }
+    }
+
+    /**
+     * Запись CSV через фиксированные буферы символов и байт.
+     */
+    private final class CsvWriter {
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final CharBuffer chars = CharBuffer.allocate(bufferSize);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(bufferSize * 3 + 16);
+        private long bytes;
+
+        CsvWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (!needsQuotes(value)) {
+                writeRaw(value);
+                return;
+            }
+            put('"');
+            for (var i = 0; i < value.length(); i++) {
+                var c = value.charAt(i);
+                if (c == '"') {
+                    put('"');
+                }
+                put(c);
+            }
+            put('"');
+        }
+
+        void writeRaw(String value) throws IOException {
+            for (var i = 0; i < value.length(); i++) {
+                put(value.charAt(i));
+            }
+        }
+
+        void endRow() throws IOException {
+            put('\n');
+        }
+
+        void close() throws IOException {
+            encode(true);
+            while (encoder.flush(out) == CoderResult.OVERFLOW) {
+                drain();
+            }
+            drain();
+        }
+
+        private void put(char c) throws IOException {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            chars.put(c);
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (true) {
+                var result = encoder.encode(chars, out, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    result.throwException();
+                }
+            }
+            // незаконченная суррогатная пара остаётся в буфере до следующего символа
+            chars.compact();
+            drain();
+        }
+
+        private void drain() throws IOException {
+            out.flip();
+            while (out.hasRemaining()) {
+                bytes += channel.write(out);
+            }
+            out.clear();
+        }
+
+        private static boolean needsQuotes(String value) {
+            if (value.isEmpty()) {
+                return true;
+            }
+            for (var i = 0; i < value.length(); i++) {
+                var c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,10 +1,35 @@
 package code;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
 
 /**
  * Реализация паттерна Data Access Object (DAO) для сущности {@link User}.
@@ -16,17 +41,69 @@ import java.util.Optional;
  * <ul>
  *   <li>Инкапсуляция SQL-запросов внутри класса.</li>
  *   <li>Отсутствие зависимости от бизнес-логики.</li>
- *   <li>Использование {@link java.sql.Connection} извне (внедрение зависимости).</li>
+ *   <li>Использование {@link java.sql.Connection} или {@link DataSource} извне (внедрение зависимости).</li>
  * </ul>
  *
  * <h2>Особенности реализации:</h2>
  * <ul>
- *   <li>Метод {@link #save(User)} поддерживает как INSERT, так и UPDATE (паттерн "upsert").</li>
- *   <li>Используется {@link java.sql.Statement#RETURN_GENERATED_KEYS} для получения ID после вставки.</li>
+ *   <li>Метод {@link #save(User)} поддерживает как INSERT, так и UPDATE (паттерн "upsert").
+ *       Для пользователей, загруженных через DAO, записываются только изменённые колонки,
+ *       а неизменённые пользователи не записываются вовсе (см. {@link #getWritesAvoided()}).
+ *       В режиме upsert ({@link UserDAOBuilder#withUpsert(boolean)}) пользователь с ID, не загруженный
+ *       через DAO, записывается одним {@code MERGE}.</li>
+ *   <li>Каждое обновление увеличивает версию строки (колонка {@code version}). В режиме оптимистической
+ *       блокировки ({@link UserDAOBuilder#withOptimisticLocking(boolean)}) UPDATE выполняется только при
+ *       совпадении версии с прочитанной ({@code WHERE id = ? AND version = ?}), а конфликт бросает
+ *       {@link OptimisticLockException}. Так писатели одних и тех же пользователей не теряют чужие изменения
+ *       и не сериализуются блокировками; {@link #saveMerging(User, int)} при конфликте переносит изменения
+ *       на свежую версию строки и повторяет запись.
+ *       Версия увеличивается и без блокировки: DAO с блокировкой над той же таблицей должен видеть записи
+ *       DAO без неё. После записи версия в объекте тоже растёт на единицу в обоих режимах; без блокировки
+ *       это версия, которую строка получила, если её никто не менял с момента чтения, — DAO это не проверяет.</li>
+ *   <li>Используется {@link java.sql.Statement#RETURN_GENERATED_KEYS} для получения ID после вставки.
+ *       Если задан {@link IdAllocator}, ID выдаются до вставки и записываются явно.</li>
  *   <li>Метод {@link #find(Long)} возвращает {@link java.util.Optional}, чтобы избежать null.</li>
- *   <li>Все ресурсы (PreparedStatement) управляются через try-with-resources.</li>
+ *   <li>Методы {@link #findByUsername(String)}, {@link #findByPhone(String)} и
+ *       {@link #findByUsernamePrefix(String, int)} ищут по вторичным индексам из {@link UserSchema}.</li>
+ *   <li>Метод {@link #findAll(Collection)} загружает много пользователей за один запрос на кусок ID
+ *       вместо запроса на каждый ID (проблема "N+1").</li>
+ *   <li>Метод {@link #streamAll(int)} лениво читает всю таблицу через однонаправленный курсор,
+ *       не загружая её в память целиком.</li>
+ *   <li>Методы {@link #findPage(Long, int)} и {@link #findPageByUsername(String, Long, int)} реализуют
+ *       keyset-пагинацию: следующая страница ищется по ключу последней строки, а не через OFFSET,
+ *       поэтому время запроса не растёт с номером страницы.</li>
+ *   <li>Метод {@link #saveAll(Collection, int)} сохраняет пользователей пакетами через
+ *       {@code addBatch}/{@code executeBatch}, по одной транзакции на пакет.</li>
+ *   <li>Методы {@link #deleteAll(Collection, int, Consumer)} и {@link #purgeWhere(String, List, int, Consumer)}
+ *       удаляют много пользователей кусками, каждый в своей короткой транзакции, и сообщают о ходе удаления.</li>
+ *   <li>Метод {@link #beginUnitOfWork(int)} возвращает {@link UserUnitOfWork}: сохранения и удаления за весь
+ *       запрос копятся в памяти и записываются пакетами в одной транзакции с одним коммитом.</li>
+ *   <li>Подготовленные запросы переиспользуются через {@link StatementCache} — по кэшу на физическое
+ *       соединение, поэтому БД не разбирает один и тот же SQL на каждый вызов.
+ *       Результаты запросов ({@link java.sql.ResultSet}) закрываются через try-with-resources.</li>
  * </ul>
  *
+ * <h2>Режимы работы с соединением:</h2>
+ * <ul>
+ *   <li>{@link #UserDAO(Connection)} — все операции идут через одно соединение.
+ *       Такой DAO нельзя использовать из нескольких потоков одновременно.</li>
+ *   <li>{@link #UserDAO(DataSource)} — на каждую операцию соединение берётся из источника
+ *       и сразу возвращается. Такой DAO можно делить между потоками: источником может быть
+ *       {@link ConnectionPool} (общий ограниченный набор соединений) или {@link ThreadConfinedDataSource}
+ *       (своё соединение у каждого рабочего потока). Кэш подготовленных запросов привязан к физическому
+ *       соединению, а метрики и счётчики — на {@link LongAdder}, поэтому потоки не делят изменяемого состояния,
+ *       кроме самой БД.</li>
+ * </ul>
+ *
+ * <p>Дополнительные настройки задаются через {@link UserDAOBuilder}.
+ *
+ * <h2>Метрики:</h2>
+ * Длительность, количество строк и ошибки каждой операции (вместе с ожиданием соединения)
+ * записываются в {@link DaoMetrics}, см. {@link #getMetrics()}. Для каждого запроса также создаётся
+ * событие Java Flight Recorder {@link JdbcStatementEvent}; в запись попадают только медленные запросы.
+ * Если задан {@link SlowQueryLog} ({@link UserDAOBuilder#withSlowQueryLog(SlowQueryLog)}), медленные запросы
+ * одиночных операций вместе с параметрами и планом выполнения пишутся в локальный журнал.
+ *
  * <h2>Потенциальные улучшения:</h2>
  * <ul>
  *   <li>Добавить валидацию входных данных.</li>
@@ -34,8 +111,64 @@ import java.util.Optional;
  *   <li>Поддержка транзакций (через внешнее управление).</li>
  * </ul>
  */
-public class UserDAO {
+public class UserDAO implements UserRepository {
+    /**
+     * Размер пакета по умолчанию для {@link #saveAll(Collection)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Размер кэша подготовленных запросов на одно соединение по умолчанию.
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 16;
+
+    /**
+     * Максимальное количество ID в одном запросе {@link #findAll(Collection)} по умолчанию.
+     */
+    public static final int DEFAULT_FIND_ALL_CHUNK_SIZE = 1_000;
+
+    /**
+     * Количество строк, запрашиваемых у курсора за раз в {@link #streamAll()}, по умолчанию.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private static final String INSERT_SQL = "INSERT INTO users (username, phone) VALUES (?, ?)";
+    private static final String INSERT_WITH_ID_SQL = "INSERT INTO users (id, username, phone) VALUES (?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM users WHERE id = ?";
+    private static final String DELETE_ALL_SQL = "DELETE FROM users WHERE id = ANY(?)";
+    private static final String FIND_SQL = "SELECT username, phone, version FROM users WHERE id = ?";
+    private static final String FIND_ALL_SQL = "SELECT id, username, phone, version FROM users WHERE id = ANY(?)";
+    private static final String STREAM_ALL_SQL = "SELECT id, username, phone, version FROM users ORDER BY id";
+    private static final String PAGE_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String PAGE_BY_USERNAME_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE (username, id) > (?, ?) ORDER BY username, id LIMIT ?";
+    private static final String FIRST_PAGE_BY_USERNAME_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE username IS NOT NULL ORDER BY username, id LIMIT ?";
+    private static final String FIND_BY_USERNAME_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE username = ? ORDER BY id";
+    private static final String FIND_BY_PHONE_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE phone = ? ORDER BY id";
+    private static final String FIND_BY_USERNAME_PREFIX_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE username >= ? AND username < ? ORDER BY username, id LIMIT ?";
+    private static final String FIND_BY_USERNAME_PREFIX_OPEN_SQL = "SELECT id, username, phone, version FROM users "
+            + "WHERE username >= ? AND username LIKE ? ESCAPE '\\' ORDER BY username, id LIMIT ?";
+
+    private static final String ID_TOKEN_PREFIX = "id:";
+    private static final String USERNAME_TOKEN_PREFIX = "username:";
+
     private final Connection connection;
+    private final DataSource dataSource;
+    private final int statementCacheSize;
+    private final IdAllocator idAllocator;
+    private final boolean upsert;
+    private final boolean optimisticLocking;
+    private final LongAdder writesAvoided = new LongAdder();
+    private final LongAdder optimisticLockConflicts = new LongAdder();
+    private final DaoMetrics metrics;
+    private final SlowQueryLog slowQueryLog;
+    private final StatementCache.Counters statementCacheCounters = new StatementCache.Counters();
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
 
     /**
      * Создаёт DAO с заданным соединением к БД.
@@ -43,7 +176,57 @@ public class UserDAO {
      * @param conn соединение с базой данных (не должно быть null)
      */
     public UserDAO(Connection conn) {
-        this.connection = Objects.requireNonNull(conn, "Connection must not be null");
+        this(conn, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Создаёт DAO с заданным соединением к БД и размером кэша подготовленных запросов.
+     *
+     * @param conn               соединение с базой данных (не должно быть null)
+     * @param statementCacheSize максимальное число подготовленных запросов в кэше (больше нуля)
+     */
+    public UserDAO(Connection conn, int statementCacheSize) {
+        this(Objects.requireNonNull(conn, "Connection must not be null"), null, statementCacheSize, null, false, false,
+                new DaoMetrics(), null);
+    }
+
+    /**
+     * Создаёт DAO, который берёт соединение из источника на каждую операцию.
+     *
+     * @param dataSource источник соединений, например {@link ConnectionPool} (не должен быть null)
+     */
+    public UserDAO(DataSource dataSource) {
+        this(dataSource, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Создаёт DAO, который берёт соединение из источника на каждую операцию.
+     *
+     * @param dataSource         источник соединений, например {@link ConnectionPool} (не должен быть null)
+     * @param statementCacheSize максимальное число подготовленных запросов в кэше на одно соединение (больше нуля)
+     */
+    public UserDAO(DataSource dataSource, int statementCacheSize) {
+        this(null, Objects.requireNonNull(dataSource, "DataSource must not be null"), statementCacheSize, null, false, false,
+                new DaoMetrics(), null);
+    }
+
+    UserDAO(Connection connection, DataSource dataSource, int statementCacheSize, IdAllocator idAllocator,
+            boolean upsert, boolean optimisticLocking, DaoMetrics metrics, SlowQueryLog slowQueryLog) {
+        if (statementCacheSize <= 0) {
+            throw new IllegalArgumentException("Statement cache size must be positive: " + statementCacheSize);
+        }
+        if (upsert && optimisticLocking) {
+            // MERGE записывает строку, не глядя на её версию, — проверять нечего
+            throw new IllegalArgumentException("Upsert mode cannot be combined with optimistic locking");
+        }
+        this.connection = connection;
+        this.dataSource = dataSource;
+        this.statementCacheSize = statementCacheSize;
+        this.idAllocator = idAllocator;
+        this.upsert = upsert;
+        this.optimisticLocking = optimisticLocking;
+        this.metrics = Objects.requireNonNull(metrics, "Metrics must not be null");
+        this.slowQueryLog = slowQueryLog;
     }
 
     /**
@@ -53,31 +236,546 @@ public class UserDAO {
      * Иначе — UPDATE по существующему ID.
      *
      * <p>После успешной вставки метод устанавливает сгенерированный ID в объект {@code user}.
+     * Если задан {@link IdAllocator}, ID берётся из него и вставляется явно, без чтения сгенерированных ключей.
+     *
+     * <p>Если пользователь был загружен или сохранён через DAO и с тех пор не менялся, запись пропускается.
+     * Если изменились не все поля, UPDATE затрагивает только изменённые колонки.
+     *
+     * <p>После UPDATE версия в объекте увеличивается на единицу. В режиме оптимистической блокировки UPDATE
+     * сначала проверяет, что версия строки всё ещё равна {@link User#getVersion()}.
      *
      * @param user сохраняемый пользователь (не null)
-     * @throws SQLException при ошибках работы с БД
+     * @throws OptimisticLockException если в режиме оптимистической блокировки строку уже изменили или удалили
+     * @throws SQLException            при ошибках работы с БД
      */
+    @Override
     public void save(User user) throws SQLException {
-        if (user.getId() == null) {
-            var sql = "INSERT INTO users (username, phone) VALUES (?, ?)";
-            try (var stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        if (user.getId() != null && !user.isDirty()) {
+            writesAvoided.increment();
+            return;
+        }
+        var operation = user.getId() == null ? DaoOperation.INSERT : DaoOperation.UPDATE;
+        var kind = user.getId() == null ? null : updateKindFor(user);
+        var expectedVersion = user.getVersion();
+        String sql;
+        if (kind != null) {
+            sql = kind.sql(optimisticLocking);
+        } else {
+            sql = idAllocator != null ? INSERT_WITH_ID_SQL : INSERT_SQL;
+        }
+        withConnection(operation, sql, () -> bindsFor(user, kind, expectedVersion), Integer::longValue, conn -> {
+            int rows;
+            if (user.getId() == null && idAllocator != null) {
+                var id = idAllocator.nextId(conn);
+                var stmt = prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+                stmt.setLong(1, id);
+                stmt.setString(2, user.getName());
+                stmt.setString(3, user.getPhone());
+                rows = stmt.executeUpdate();
+                user.setId(id);
+                user.setVersion(0);
+            } else if (user.getId() == null) {
+                var stmt = prepare(conn, sql, Statement.RETURN_GENERATED_KEYS);
                 stmt.setString(1, user.getName());
                 stmt.setString(2, user.getPhone());
-                stmt.executeUpdate();
-                var keys = stmt.getGeneratedKeys();
-                if (keys.next()) {
-                    user.setId(keys.getLong(1));
-                } else {
-                    throw new SQLException("DB did not return generated key after INSERT");
+                rows = stmt.executeUpdate();
+                try (var keys = stmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        user.setId(keys.getLong(1));
+                        user.setVersion(0);
+                    } else {
+                        throw new SQLException("DB did not return generated key after INSERT");
+                    }
+                }
+            } else {
+                var stmt = prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+                kind.bind(stmt, user, optimisticLocking);
+                rows = stmt.executeUpdate();
+                if (optimisticLocking && rows == 0) {
+                    optimisticLockConflicts.increment();
+                    throw new OptimisticLockException(user.getId(), expectedVersion);
                 }
+                user.setVersion(expectedVersion + 1);
             }
-        } else {
-            var sql = "UPDATE users SET username = ?, phone = ? WHERE id = ?";
-            try (var stmt = connection.prepareStatement(sql)) {
+            user.markClean();
+            return rows;
+        });
+    }
+
+    /**
+     * Сохраняет коллекцию пользователей пакетами по {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param users сохраняемые пользователи (не null)
+     * @return статистика выполнения
+     * @throws SQLException при ошибках работы с БД
+     * @see #saveAll(Collection, int)
+     */
+    public BatchStats saveAll(Collection<User> users) throws SQLException {
+        return saveAll(users, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Сохраняет коллекцию пользователей пакетами.
+     *
+     * <p>Новые пользователи ({@code id == null}) вставляются через INSERT, существующие — обновляются через UPDATE
+     * (или MERGE в режиме upsert). Неизменённые пользователи пропускаются, как и в {@link #save(User)}.
+     * Каждая группа отправляется в БД через {@code addBatch}/{@code executeBatch} кусками по {@code batchSize}
+     * строк, каждый кусок — в отдельной транзакции. Это убирает построчные накладные расходы
+     * (отдельный запрос и отдельный {@code getGeneratedKeys()} на каждого пользователя).
+     *
+     * <p>Сгенерированные ID проставляются в объекты {@code User} только после успешного коммита куска.
+     * Если задан {@link IdAllocator}, ID выдаются заранее и {@code getGeneratedKeys()} не читается вовсе.
+     * При ошибке текущий кусок откатывается, а уже закоммиченные куски остаются в БД.
+     * В режиме оптимистической блокировки конфликт любого пользователя откатывает весь его кусок.
+     *
+     * @param users     сохраняемые пользователи (не null)
+     * @param batchSize максимальное количество строк в одном пакете (больше нуля)
+     * @return статистика выполнения, включая скорость в строках в секунду
+     * @throws OptimisticLockException если в режиме оптимистической блокировки строку уже изменили или удалили
+     * @throws SQLException            при ошибках работы с БД
+     */
+    public BatchStats saveAll(Collection<User> users, int batchSize) throws SQLException {
+        Objects.requireNonNull(users, "Users must not be null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        var plan = new WritePlan(users);
+        var start = System.nanoTime();
+        withConnection(conn -> {
+            var autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (var from = 0; from < plan.inserts.size(); from += batchSize) {
+                    var chunk = plan.inserts.subList(from, Math.min(from + batchSize, plan.inserts.size()));
+                    assignIds(chunk, insertChunk(conn, chunk, true));
+                }
+                for (var group : plan.updates.entrySet()) {
+                    var kind = group.getKey();
+                    var list = group.getValue();
+                    for (var from = 0; from < list.size(); from += batchSize) {
+                        var chunk = list.subList(from, Math.min(from + batchSize, list.size()));
+                        updateChunk(conn, kind, chunk, true);
+                        plan.markUpdated(chunk);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        return new BatchStats(plan.inserts.size(), plan.updated, plan.skipped, System.nanoTime() - start);
+    }
+
+    /**
+     * Начинает единицу работы с уровнем изоляции {@link Connection#TRANSACTION_READ_COMMITTED}.
+     *
+     * @return пустая единица работы над этим DAO
+     * @see #beginUnitOfWork(int)
+     */
+    public UserUnitOfWork beginUnitOfWork() {
+        return beginUnitOfWork(Connection.TRANSACTION_READ_COMMITTED);
+    }
+
+    /**
+     * Начинает единицу работы: сохранения и удаления копятся в памяти и записываются одной транзакцией
+     * при {@link UserUnitOfWork#commit()}.
+     *
+     * @param isolationLevel уровень изоляции транзакции, например {@link Connection#TRANSACTION_REPEATABLE_READ}
+     * @return пустая единица работы над этим DAO
+     */
+    public UserUnitOfWork beginUnitOfWork(int isolationLevel) {
+        return new UserUnitOfWork(this, isolationLevel, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Записывает изменения единицы работы одной транзакцией: вставки, затем обновления, сгруппированные
+     * по набору колонок, затем удаления — каждая группа пакетами по {@code batchSize}.
+     *
+     * <p>Обновления и удаления идут в порядке возрастания ID, а группы обновлений — в фиксированном порядке,
+     * поэтому две транзакции над одними строками берут блокировки в одном порядке и не ждут друг друга по кругу.
+     *
+     * <p>ID и версии проставляются в объекты только после коммита; при ошибке транзакция откатывается целиком,
+     * а объекты остаются в прежнем состоянии.
+     */
+    UnitOfWorkStats commitUnitOfWork(Collection<User> saves, List<Long> deletes, int isolationLevel, int batchSize)
+            throws SQLException {
+        var plan = new WritePlan(saves);
+        var sortedDeletes = deletes.stream().sorted().toList();
+        var start = System.nanoTime();
+        return withConnection(conn -> {
+            var autoCommit = conn.getAutoCommit();
+            var isolation = conn.getTransactionIsolation();
+            conn.setTransactionIsolation(isolationLevel);
+            conn.setAutoCommit(false);
+            var ids = new long[plan.inserts.size()];
+            var batches = 0;
+            long deleted = 0;
+            try {
+                for (var from = 0; from < plan.inserts.size(); from += batchSize) {
+                    var chunk = plan.inserts.subList(from, Math.min(from + batchSize, plan.inserts.size()));
+                    System.arraycopy(insertChunk(conn, chunk, false), 0, ids, from, chunk.size());
+                    batches++;
+                }
+                for (var group : plan.updates.entrySet()) {
+                    var list = group.getValue();
+                    for (var from = 0; from < list.size(); from += batchSize) {
+                        updateChunk(conn, group.getKey(), list.subList(from, Math.min(from + batchSize, list.size())),
+                                false);
+                        batches++;
+                    }
+                }
+                for (var from = 0; from < sortedDeletes.size(); from += batchSize) {
+                    var chunk = sortedDeletes.subList(from, Math.min(from + batchSize, sortedDeletes.size()));
+                    deleted += deleteChunk(conn, chunk, false);
+                    batches++;
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+                conn.setTransactionIsolation(isolation);
+            }
+            assignIds(plan.inserts, ids);
+            plan.updates.values().forEach(plan::markUpdated);
+            return new UnitOfWorkStats(plan.inserts.size(), plan.updated, (int) deleted, plan.skipped, batches,
+                    System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * Вставляет кусок пользователей одним пакетом и возвращает их ID (в объекты они не проставляются).
+     *
+     * @param commit {@code true} — закоммитить кусок; иначе коммит за вызывающим кодом.
+     *               При ошибке транзакция откатывается в любом случае
+     */
+    private long[] insertChunk(Connection conn, List<User> chunk, boolean commit) throws SQLException {
+        if (idAllocator != null) {
+            return insertChunkWithIds(conn, chunk, commit);
+        }
+        var ids = new long[chunk.size()];
+        var stmt = prepare(conn, INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+        var event = new JdbcStatementEvent();
+        event.begin();
+        var start = metrics.start();
+        try {
+            for (var user : chunk) {
                 stmt.setString(1, user.getName());
                 stmt.setString(2, user.getPhone());
-                stmt.setLong(3, user.getId());
-                stmt.executeUpdate();
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            try (var keys = stmt.getGeneratedKeys()) {
+                var i = 0;
+                while (keys.next() && i < ids.length) {
+                    ids[i++] = keys.getLong(1);
+                }
+                if (i != ids.length) {
+                    throw new SQLException("DB returned " + i + " generated keys for " + ids.length + " rows");
+                }
+            }
+            if (commit) {
+                conn.commit();
+            }
+            metrics.success(DaoOperation.INSERT, start, ids.length);
+            commitEvent(event, DaoOperation.INSERT, INSERT_SQL, ids.length, 0, false);
+        } catch (SQLException e) {
+            metrics.failure(DaoOperation.INSERT, start);
+            commitEvent(event, DaoOperation.INSERT, INSERT_SQL, 0, 0, true);
+            stmt.clearBatch();
+            conn.rollback();
+            throw e;
+        }
+        return ids;
+    }
+
+    private long[] insertChunkWithIds(Connection conn, List<User> chunk, boolean commit) throws SQLException {
+        var ids = new long[chunk.size()];
+        for (var i = 0; i < ids.length; i++) {
+            ids[i] = idAllocator.nextId(conn);
+        }
+        var stmt = prepare(conn, INSERT_WITH_ID_SQL, Statement.NO_GENERATED_KEYS);
+        var event = new JdbcStatementEvent();
+        event.begin();
+        var start = metrics.start();
+        try {
+            for (var i = 0; i < ids.length; i++) {
+                var user = chunk.get(i);
+                stmt.setLong(1, ids[i]);
+                stmt.setString(2, user.getName());
+                stmt.setString(3, user.getPhone());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            if (commit) {
+                conn.commit();
+            }
+            metrics.success(DaoOperation.INSERT, start, ids.length);
+            commitEvent(event, DaoOperation.INSERT, INSERT_WITH_ID_SQL, ids.length, 0, false);
+        } catch (SQLException e) {
+            metrics.failure(DaoOperation.INSERT, start);
+            commitEvent(event, DaoOperation.INSERT, INSERT_WITH_ID_SQL, 0, 0, true);
+            stmt.clearBatch();
+            conn.rollback();
+            throw e;
+        }
+        return ids;
+    }
+
+    /**
+     * Обновляет кусок пользователей одним пакетом; версии и флаги изменений в объектах не трогает.
+     *
+     * @param commit {@code true} — закоммитить кусок; иначе коммит за вызывающим кодом.
+     *               При ошибке или конфликте версий транзакция откатывается в любом случае
+     */
+    private void updateChunk(Connection conn, UpdateKind kind, List<User> chunk, boolean commit) throws SQLException {
+        var sql = kind.sql(optimisticLocking);
+        var stmt = prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+        var event = new JdbcStatementEvent();
+        event.begin();
+        var start = metrics.start();
+        try {
+            for (var user : chunk) {
+                kind.bind(stmt, user, optimisticLocking);
+                stmt.addBatch();
+            }
+            var counts = stmt.executeBatch();
+            long rows = 0;
+            for (var i = 0; i < counts.length; i++) {
+                if (optimisticLocking && counts[i] == 0) {
+                    optimisticLockConflicts.increment();
+                    var user = chunk.get(i);
+                    throw new OptimisticLockException(user.getId(), user.getVersion());
+                }
+                rows += Math.max(counts[i], 0);
+            }
+            if (commit) {
+                conn.commit();
+            }
+            metrics.success(DaoOperation.UPDATE, start, rows);
+            commitEvent(event, DaoOperation.UPDATE, sql, rows, 0, false);
+        } catch (SQLException e) {
+            metrics.failure(DaoOperation.UPDATE, start);
+            commitEvent(event, DaoOperation.UPDATE, sql, 0, 0, true);
+            stmt.clearBatch();
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Удаляет кусок пользователей по ID одним запросом {@code WHERE id = ANY(?)}.
+     *
+     * @param commit {@code true} — закоммитить кусок; иначе коммит за вызывающим кодом.
+     *               При ошибке транзакция откатывается в любом случае
+     * @return количество удалённых строк
+     */
+    private long deleteChunk(Connection conn, List<Long> ids, boolean commit) throws SQLException {
+        var stmt = prepare(conn, DELETE_ALL_SQL, Statement.NO_GENERATED_KEYS);
+        var event = new JdbcStatementEvent();
+        event.begin();
+        var start = metrics.start();
+        var array = conn.createArrayOf("BIGINT", ids.toArray());
+        try {
+            stmt.setArray(1, array);
+            long rows = stmt.executeUpdate();
+            if (commit) {
+                conn.commit();
+            }
+            metrics.success(DaoOperation.DELETE, start, rows);
+            commitEvent(event, DaoOperation.DELETE, DELETE_ALL_SQL, rows, 0, false);
+            return rows;
+        } catch (SQLException e) {
+            metrics.failure(DaoOperation.DELETE, start);
+            commitEvent(event, DaoOperation.DELETE, DELETE_ALL_SQL, 0, 0, true);
+            conn.rollback();
+            throw e;
+        } finally {
+            array.free();
+        }
+    }
+
+    private static void assignIds(List<User> users, long[] ids) {
+        for (var i = 0; i < ids.length; i++) {
+            users.get(i).setId(ids[i]);
+            users.get(i).setVersion(0);
+            users.get(i).markClean();
+        }
+    }
+
+    /**
+     * Отмечает записанные обновления: версия строки выросла на единицу в любом режиме.
+     */
+    private void markUpdated(List<User> users) {
+        for (var user : users) {
+            user.setVersion(user.getVersion() + 1);
+            user.markClean();
+        }
+    }
+
+    /**
+     * Пользователи, разобранные для пакетной записи: новые — на вставку, изменённые — на обновление
+     * по группам с одинаковым набором колонок, неизменённые пропускаются.
+     *
+     * <p>Несколько объектов с одним ID записываются одной строкой: в состоянии последнего из них и с изменёнными
+     * полями всех (см. {@link User#absorbChanges(User)}), иначе второй UPDATE той же строки был бы лишним,
+     * а при оптимистической блокировке — ложным конфликтом. Группы обновлений идут в порядке {@link UpdateKind},
+     * внутри группы — по возрастанию ID.
+     */
+    private final class WritePlan {
+        private final List<User> inserts = new ArrayList<>();
+        private final Map<UpdateKind, List<User>> updates = new EnumMap<>(UpdateKind.class);
+        private final Map<User, List<User>> instances = new IdentityHashMap<>();
+        private int updated;
+        private int skipped;
+
+        WritePlan(Collection<User> users) {
+            var newUsers = Collections.newSetFromMap(new IdentityHashMap<User, Boolean>());
+            var byId = new HashMap<Long, List<User>>();
+            for (var user : users) {
+                if (user.getId() == null) {
+                    if (newUsers.add(user)) {
+                        inserts.add(user);
+                    }
+                } else {
+                    byId.computeIfAbsent(user.getId(), id -> new ArrayList<>(1)).add(user);
+                }
+            }
+            for (var same : byId.values()) {
+                var user = merge(same);
+                if (!user.isDirty()) {
+                    skipped++;
+                } else {
+                    updates.computeIfAbsent(updateKindFor(user), kind -> new ArrayList<>()).add(user);
+                    updated++;
+                }
+            }
+            updates.values().forEach(list -> list.sort(Comparator.comparing(User::getId)));
+            writesAvoided.add(skipped);
+        }
+
+        /**
+         * Отмечает записанные обновления, в том числе во всех объектах, слитых в одну строку.
+         */
+        void markUpdated(List<User> written) {
+            UserDAO.this.markUpdated(written);
+            for (var user : written) {
+                var same = instances.get(user);
+                if (same != null) {
+                    same.forEach(instance -> instance.adopt(user));
+                }
+            }
+        }
+
+        private User merge(List<User> same) {
+            if (same.size() == 1) {
+                return same.get(0);
+            }
+            var merged = same.get(same.size() - 1).copy();
+            for (var i = same.size() - 2; i >= 0; i--) {
+                merged.absorbChanges(same.get(i));
+            }
+            instances.put(merged, same);
+            return merged;
+        }
+    }
+
+    /**
+     * Выбирает запрос для записи существующего пользователя.
+     *
+     * <p>Пользователь, загруженный через DAO, обновляется только по изменённым колонкам.
+     * Пользователь, про которого DAO ничего не знает, записывается целиком: через MERGE в режиме upsert
+     * (строки может ещё не быть), иначе через UPDATE — в режиме оптимистической блокировки с проверкой
+     * версии, заданной через {@link User#setVersion(long)}.
+     */
+    private UpdateKind updateKindFor(User user) {
+        if (!user.isTracked()) {
+            return upsert ? UpdateKind.MERGE : UpdateKind.FULL;
+        }
+        if (user.isNameDirty() && user.isPhoneDirty()) {
+            return UpdateKind.FULL;
+        }
+        return user.isNameDirty() ? UpdateKind.NAME_ONLY : UpdateKind.PHONE_ONLY;
+    }
+
+    /**
+     * Значения параметров запроса {@link #save(User)} в порядке {@code ?} — для {@link SlowQueryLog}.
+     * Вызывается после выполнения, поэтому ID вставленного пользователя уже известен.
+     */
+    private Object[] bindsFor(User user, UpdateKind kind, long expectedVersion) {
+        if (kind != null) {
+            var binds = kind.binds(user);
+            if (!optimisticLocking) {
+                return binds;
+            }
+            var checked = Arrays.copyOf(binds, binds.length + 1);
+            checked[binds.length] = expectedVersion;
+            return checked;
+        }
+        return idAllocator != null
+                ? new Object[] {user.getId(), user.getName(), user.getPhone()}
+                : new Object[] {user.getName(), user.getPhone()};
+    }
+
+    /**
+     * @return сколько раз запись была пропущена, потому что пользователь не изменился
+     */
+    public long getWritesAvoided() {
+        return writesAvoided.sum();
+    }
+
+    /**
+     * @return сколько раз в режиме оптимистической блокировки запись не удалась из-за изменённой версии строки
+     */
+    public long getOptimisticLockConflicts() {
+        return optimisticLockConflicts.sum();
+    }
+
+    /**
+     * Сохраняет пользователя, а при конфликте версий переносит его изменения на свежую версию строки
+     * и повторяет запись.
+     *
+     * <p>При каждом конфликте строка перечитывается, и на неё накладываются только поля, изменённые в {@code user}:
+     * изменения других писателей в остальных колонках сохраняются, а в тех же колонках побеждает {@code user}.
+     * После успешной записи {@code user} принимает итоговое состояние строки, включая новую версию.
+     *
+     * <p>Без оптимистической блокировки конфликтов не бывает, и метод равносилен {@link #save(User)}.
+     *
+     * <pre>{@code
+     * var user = userDAO.find(id).orElseThrow();
+     * user.setPhone(phone);
+     * userDAO.saveMerging(user, 5);
+     * }</pre>
+     *
+     * @param user        сохраняемый пользователь (не null)
+     * @param maxAttempts сколько всего попыток записи сделать (больше нуля)
+     * @return номер попытки, которая удалась
+     * @throws OptimisticLockException если все попытки завершились конфликтом или пользователя удалили
+     * @throws SQLException            при ошибках работы с БД
+     */
+    public int saveMerging(User user, int maxAttempts) throws SQLException {
+        Objects.requireNonNull(user, "User must not be null");
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Max attempts must be positive: " + maxAttempts);
+        }
+        var attempt = user;
+        for (var i = 1; ; i++) {
+            try {
+                save(attempt);
+                if (attempt != user) {
+                    user.adopt(attempt);
+                }
+                return i;
+            } catch (OptimisticLockException e) {
+                if (i == maxAttempts) {
+                    throw e;
+                }
+                // удалённую строку перечитывать бесполезно — конфликт окончательный
+                var latest = find(user.getId()).orElseThrow(() -> e);
+                user.rebaseOnto(latest);
+                attempt = latest;
             }
         }
     }
@@ -88,11 +786,169 @@ public class UserDAO {
      * @param user удаляемый пользователь (должен иметь ID)
      * @throws SQLException при ошибках работы с БД
      */
+    @Override
     public void delete(User user) throws SQLException {
-        var sql = "DELETE FROM users WHERE id = ?";
-        try (var stmt = connection.prepareStatement(sql)) {
+        Supplier<Object[]> binds = () -> new Object[] {user.getId()};
+        withConnection(DaoOperation.DELETE, DELETE_SQL, binds, Integer::longValue, conn -> {
+            var stmt = prepare(conn, DELETE_SQL, Statement.NO_GENERATED_KEYS);
             stmt.setLong(1, user.getId());
-            stmt.executeUpdate();
+            return stmt.executeUpdate();
+        });
+    }
+
+    /**
+     * Удаляет пользователей по коллекции ID кусками по {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param ids идентификаторы удаляемых пользователей (не null, без null-элементов)
+     * @return итоги удаления
+     * @throws SQLException при ошибках работы с БД
+     * @see #deleteAll(Collection, int, Consumer)
+     */
+    public PurgeStats deleteAll(Collection<Long> ids) throws SQLException {
+        return deleteAll(ids, DEFAULT_BATCH_SIZE, null);
+    }
+
+    /**
+     * Удаляет пользователей по коллекции ID.
+     *
+     * <p>Вместо запроса на каждого пользователя выполняется один {@code DELETE ... WHERE id = ANY(?)} на кусок
+     * из не более чем {@code batchSize} ID, и каждый кусок коммитится отдельно. Так блокировки строк держатся
+     * только на время одного куска, а журнал отмены (undo log) не растёт с размером всего удаления.
+     * При ошибке текущий кусок откатывается, а уже удалённые куски остаются удалёнными.
+     *
+     * <p>Повторяющиеся ID удаляются один раз; ID, которых нет в БД, пропускаются.
+     *
+     * @param ids       идентификаторы удаляемых пользователей (не null, без null-элементов)
+     * @param batchSize максимальное количество ID в одной транзакции (больше нуля)
+     * @param progress  слушатель, получающий итоги после каждого куска, или {@code null}
+     * @return итоги удаления, включая скорость в строках в секунду
+     * @throws SQLException при ошибках работы с БД
+     */
+    public PurgeStats deleteAll(Collection<Long> ids, int batchSize, Consumer<PurgeStats> progress)
+            throws SQLException {
+        Objects.requireNonNull(ids, "Ids must not be null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        var unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        var start = System.nanoTime();
+        return withConnection(conn -> {
+            var autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            var stats = new PurgeStats(0, 0, 0);
+            try {
+                for (var from = 0; from < unique.size(); from += batchSize) {
+                    var chunk = unique.subList(from, Math.min(from + batchSize, unique.size()));
+                    var deleted = deleteChunk(conn, chunk, true);
+                    stats = new PurgeStats(stats.deleted() + deleted, stats.transactions() + 1,
+                            System.nanoTime() - start);
+                    if (progress != null) {
+                        progress.accept(stats);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return new PurgeStats(stats.deleted(), stats.transactions(), System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * Удаляет всех пользователей, подходящих под условие, транзакциями не более чем по {@code batchSize} строк.
+     *
+     * <p>Один {@code DELETE ... WHERE <условие>} на сотни тысяч строк держит блокировки всех строк до конца
+     * и копит их в журнале отмены. Здесь каждый кусок — отдельная транзакция из одного запроса:
+     *
+     * <pre>{@code
+     * SELECT COUNT(*), MAX(id) FROM OLD TABLE (
+     *     DELETE FROM users WHERE id IN (SELECT id FROM users WHERE id > ? AND (<условие>) ORDER BY id LIMIT ?))
+     * }</pre>
+     *
+     * Условие проверяется в момент удаления, а следующий кусок ищется начиная с наибольшего удалённого ID
+     * (keyset), поэтому уже просмотренная часть таблицы не читается повторно. Удаление заканчивается,
+     * когда очередной кусок ничего не удалил. При ошибке текущий кусок откатывается, а уже удалённые
+     * остаются удалёнными — повторный вызов продолжит с того же места.
+     *
+     * <pre>{@code
+     * userDAO.purgeWhere("username LIKE ?", List.of("deleted_%"), 10_000, System.out::println);
+     * }</pre>
+     *
+     * @param condition SQL-условие над колонками {@code users} с параметрами {@code ?}; не подставляйте в него
+     *                  пользовательский ввод — только через {@code params}
+     * @param params    значения параметров условия по порядку (не null)
+     * @param batchSize максимальное количество строк в одной транзакции (больше нуля)
+     * @param progress  слушатель, получающий итоги после каждого куска, или {@code null}
+     * @return итоги удаления, включая скорость в строках в секунду
+     * @throws SQLException при ошибках работы с БД
+     */
+    public PurgeStats purgeWhere(String condition, List<?> params, int batchSize, Consumer<PurgeStats> progress)
+            throws SQLException {
+        Objects.requireNonNull(condition, "Condition must not be null");
+        Objects.requireNonNull(params, "Params must not be null");
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        var sql = "SELECT COUNT(*), MAX(id) FROM OLD TABLE (DELETE FROM users WHERE id IN "
+                + "(SELECT id FROM users WHERE id > ? AND (" + condition + ") ORDER BY id LIMIT ?))";
+        var start = System.nanoTime();
+        return withConnection(conn -> {
+            var autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            var stats = new PurgeStats(0, 0, 0);
+            var afterId = Long.MIN_VALUE;
+            // SQL с условием вызывающего кода в кэш запросов не кладём: каждое новое условие вытесняло бы
+            // из него запросы DAO, а сам запрос нужен только на время этого вызова
+            try (var stmt = conn.prepareStatement(sql)) {
+                for (var i = 0; i < params.size(); i++) {
+                    stmt.setObject(i + 2, params.get(i));
+                }
+                stmt.setInt(params.size() + 2, batchSize);
+                while (true) {
+                    stmt.setLong(1, afterId);
+                    var deleted = purgeChunk(conn, stmt, sql);
+                    if (deleted[0] == 0) {
+                        break;
+                    }
+                    afterId = deleted[1];
+                    stats = new PurgeStats(stats.deleted() + deleted[0], stats.transactions() + 1,
+                            System.nanoTime() - start);
+                    if (progress != null) {
+                        progress.accept(stats);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            return new PurgeStats(stats.deleted(), stats.transactions(), System.nanoTime() - start);
+        });
+    }
+
+    /**
+     * Выполняет и коммитит один кусок {@link #purgeWhere}.
+     *
+     * @return количество удалённых строк и наибольший удалённый ID
+     */
+    private long[] purgeChunk(Connection conn, PreparedStatement stmt, String sql) throws SQLException {
+        var event = new JdbcStatementEvent();
+        event.begin();
+        var start = metrics.start();
+        try {
+            long rows;
+            long maxId;
+            try (var rs = stmt.executeQuery()) {
+                rs.next();
+                rows = rs.getLong(1);
+                maxId = rs.getLong(2);
+            }
+            conn.commit();
+            metrics.success(DaoOperation.DELETE, start, rows);
+            commitEvent(event, DaoOperation.DELETE, sql, rows, 0, false);
+            return new long[] {rows, maxId};
+        } catch (SQLException e) {
+            metrics.failure(DaoOperation.DELETE, start);
+            commitEvent(event, DaoOperation.DELETE, sql, 0, 0, true);
+            conn.rollback();
+            throw e;
         }
     }
 
@@ -106,18 +962,641 @@ public class UserDAO {
      * @return {@link Optional} с пользователем или пустой Optional
      * @throws SQLException при ошибках работы с БД
      */
+    @Override
     public Optional<User> find(Long id) throws SQLException {
-        var sql = "SELECT username, phone FROM users WHERE id = ?";
-        try (var stmt = connection.prepareStatement(sql)) {
+        Supplier<Object[]> binds = () -> new Object[] {id};
+        return withConnection(DaoOperation.FIND, FIND_SQL, binds, user -> user.isPresent() ? 1 : 0, conn -> {
+            var stmt = prepare(conn, FIND_SQL, Statement.NO_GENERATED_KEYS);
             stmt.setLong(1, id);
             try (var rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     var user = new User(rs.getString("username"), rs.getString("phone"));
                     user.setId(id);
+                    user.setVersion(rs.getLong("version"));
+                    user.markClean();
                     return Optional.of(user);
                 }
                 return Optional.empty();
             }
+        });
+    }
+
+    /**
+     * Находит пользователей по коллекции ID кусками по {@link #DEFAULT_FIND_ALL_CHUNK_SIZE}.
+     *
+     * @param ids идентификаторы пользователей (не null, без null-элементов)
+     * @return найденные пользователи по ID
+     * @throws SQLException при ошибках работы с БД
+     * @see #findAll(Collection, int)
+     */
+    @Override
+    public Map<Long, User> findAll(Collection<Long> ids) throws SQLException {
+        return findAll(ids, DEFAULT_FIND_ALL_CHUNK_SIZE);
+    }
+
+    /**
+     * Находит пользователей по коллекции ID.
+     *
+     * <p>Вместо запроса на каждый ID выполняется один запрос {@code WHERE id = ANY(?)} на кусок
+     * из не более чем {@code chunkSize} ID, переданных одним параметром-массивом. Текст запроса
+     * не зависит от количества ID, поэтому он переиспользуется через кэш подготовленных запросов.
+     *
+     * <p>Повторяющиеся ID запрашиваются один раз. ID, которых нет в БД, в результат не попадают.
+     *
+     * @param ids       идентификаторы пользователей (не null, без null-элементов)
+     * @param chunkSize максимальное количество ID в одном запросе (больше нуля)
+     * @return найденные пользователи по ID
+     * @throws SQLException при ошибках работы с БД
+     */
+    public Map<Long, User> findAll(Collection<Long> ids, int chunkSize) throws SQLException {
+        Objects.requireNonNull(ids, "Ids must not be null");
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+
+        var unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        var result = new HashMap<Long, User>(unique.size() * 2);
+        if (unique.isEmpty()) {
+            return result;
+        }
+        Supplier<Object[]> firstChunk = () -> new Object[] {
+                unique.subList(0, Math.min(chunkSize, unique.size())).toArray(new Long[0])};
+        return withConnection(DaoOperation.FIND_MANY, FIND_ALL_SQL, firstChunk, Map::size, conn -> {
+            var stmt = prepare(conn, FIND_ALL_SQL, Statement.NO_GENERATED_KEYS);
+            for (var from = 0; from < unique.size(); from += chunkSize) {
+                var chunk = unique.subList(from, Math.min(from + chunkSize, unique.size()));
+                var array = conn.createArrayOf("BIGINT", chunk.toArray());
+                try {
+                    stmt.setArray(1, array);
+                    try (var rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            var user = mapUser(rs);
+                            result.put(user.getId(), user);
+                        }
+                    }
+                } finally {
+                    array.free();
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Находит всех пользователей с заданным именем, упорядоченных по ID.
+     *
+     * <p>Использует индекс {@code users_username_id} из {@link UserSchema}; без него запрос читает всю таблицу.
+     *
+     * @param username имя пользователя (не null)
+     * @return найденные пользователи, возможно пустой список
+     * @throws SQLException при ошибках работы с БД
+     */
+    public List<User> findByUsername(String username) throws SQLException {
+        Objects.requireNonNull(username, "Username must not be null");
+        Supplier<Object[]> binds = () -> new Object[] {username};
+        return withConnection(DaoOperation.FIND_MANY, FIND_BY_USERNAME_SQL, binds, List::size, conn -> {
+            var stmt = prepare(conn, FIND_BY_USERNAME_SQL, Statement.NO_GENERATED_KEYS);
+            stmt.setString(1, username);
+            return readPage(stmt);
+        });
+    }
+
+    /**
+     * Находит всех пользователей с заданным телефоном, упорядоченных по ID.
+     *
+     * <p>Использует индекс {@code users_phone} из {@link UserSchema}; без него запрос читает всю таблицу.
+     *
+     * @param phone телефон (не null)
+     * @return найденные пользователи, возможно пустой список
+     * @throws SQLException при ошибках работы с БД
+     */
+    public List<User> findByPhone(String phone) throws SQLException {
+        Objects.requireNonNull(phone, "Phone must not be null");
+        Supplier<Object[]> binds = () -> new Object[] {phone};
+        return withConnection(DaoOperation.FIND_MANY, FIND_BY_PHONE_SQL, binds, List::size, conn -> {
+            var stmt = prepare(conn, FIND_BY_PHONE_SQL, Statement.NO_GENERATED_KEYS);
+            stmt.setString(1, phone);
+            return readPage(stmt);
+        });
+    }
+
+    /**
+     * Находит пользователей, чьё имя начинается с {@code prefix} (как {@code username LIKE 'prefix%'}),
+     * упорядоченных по имени и ID.
+     *
+     * <p>Префикс превращается в полуинтервал {@code username >= 'abc' AND username < 'abd'}: такое условие
+     * всегда идёт по индексу {@code users_username_id}, даже когда префикс передаётся параметром,
+     * и символы {@code %} и {@code _} в префиксе не нужно экранировать.
+     *
+     * @param prefix начало имени (не null и не пустое)
+     * @param limit  максимальное количество пользователей (больше нуля)
+     * @return найденные пользователи, не больше {@code limit}
+     * @throws SQLException при ошибках работы с БД
+     */
+    public List<User> findByUsernamePrefix(String prefix, int limit) throws SQLException {
+        Objects.requireNonNull(prefix, "Prefix must not be null");
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("Prefix must not be empty");
+        }
+        checkLimit(limit);
+        var upperBound = prefixUpperBound(prefix);
+        var sql = upperBound != null ? FIND_BY_USERNAME_PREFIX_SQL : FIND_BY_USERNAME_PREFIX_OPEN_SQL;
+        var second = upperBound != null ? upperBound : escapeLike(prefix) + "%";
+        Supplier<Object[]> binds = () -> new Object[] {prefix, second, limit};
+        return withConnection(DaoOperation.FIND_MANY, sql, binds, List::size, conn -> {
+            var stmt = prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+            stmt.setString(1, prefix);
+            stmt.setString(2, second);
+            stmt.setInt(3, limit);
+            return readPage(stmt);
+        });
+    }
+
+    /**
+     * Наименьшая строка, которая больше всех строк с данным префиксом: последний символ, меньший
+     * {@link Character#MAX_VALUE}, увеличивается на единицу, а всё после него отбрасывается.
+     *
+     * @return верхняя граница или {@code null}, если префикс состоит только из {@link Character#MAX_VALUE}
+     */
+    static String prefixUpperBound(String prefix) {
+        for (var i = prefix.length() - 1; i >= 0; i--) {
+            var c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (c + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Лениво читает всех пользователей порциями по {@link #DEFAULT_FETCH_SIZE} строк.
+     *
+     * @return поток пользователей; его обязательно нужно закрыть
+     * @throws SQLException при ошибках работы с БД
+     * @see #streamAll(int)
+     */
+    public Stream<User> streamAll() throws SQLException {
+        return streamAll(DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Лениво читает всех пользователей, упорядоченных по ID.
+     *
+     * <p>Строки читаются через однонаправленный ({@code TYPE_FORWARD_ONLY}) курсор только для чтения
+     * ({@code CONCUR_READ_ONLY}) и превращаются в {@link User} по одной по мере потребления потока,
+     * поэтому в памяти не держится вся таблица.
+     *
+     * <p>Поток держит открытыми запрос, курсор и (в режиме {@link DataSource}) соединение,
+     * пока его не закроют — используйте try-with-resources:
+     *
+     * <pre>{@code
+     * try (var users = userDAO.streamAll(500)) {
+     *     users.forEach(exporter::write);
+     * }
+     * }</pre>
+     *
+     * <p>Ошибки БД во время чтения бросаются как {@link DataAccessException}.
+     * Встроенная H2 по умолчанию материализует результат запроса (большие результаты уходят на диск);
+     * для настоящего построчного чтения добавьте {@code ;LAZY_QUERY_EXECUTION=TRUE} в URL.
+     *
+     * @param fetchSize подсказка драйверу, сколько строк получать за раз (больше нуля)
+     * @return поток пользователей; его обязательно нужно закрыть
+     * @throws SQLException при ошибках выполнения запроса
+     */
+    public Stream<User> streamAll(int fetchSize) throws SQLException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        var conn = dataSource == null ? connection : dataSource.getConnection();
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(STREAM_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            var rs = stmt.executeQuery();
+            var cursor = new UserCursor(rs);
+            var ownedStmt = stmt;
+            var ownedConn = dataSource == null ? null : conn;
+            return StreamSupport.stream(cursor, false).onClose(() -> closeCursor(rs, ownedStmt, ownedConn));
+        } catch (SQLException | RuntimeException e) {
+            if (stmt != null) {
+                stmt.close();
+            }
+            if (dataSource != null) {
+                conn.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает страницу пользователей, упорядоченных по ID.
+     *
+     * <p>Запрос {@code WHERE id > ? ORDER BY id LIMIT ?} идёт по первичному ключу и сразу начинает
+     * с нужной строки, в отличие от {@code OFFSET}, который вычитывает и отбрасывает все предыдущие строки.
+     *
+     * @param afterId ID последнего пользователя предыдущей страницы или {@code null} для первой страницы
+     * @param limit   максимальное количество пользователей на странице (больше нуля)
+     * @return страница с токеном продолжения
+     * @throws SQLException при ошибках работы с БД
+     */
+    public UserPage findPage(Long afterId, int limit) throws SQLException {
+        checkLimit(limit);
+        var afterKey = afterId == null ? Long.MIN_VALUE : afterId;
+        Supplier<Object[]> binds = () -> new Object[] {afterKey, limit + 1};
+        var users = withConnection(DaoOperation.FIND_MANY, PAGE_SQL, binds, List::size, conn -> {
+            var stmt = prepare(conn, PAGE_SQL, Statement.NO_GENERATED_KEYS);
+            stmt.setLong(1, afterKey);
+            stmt.setInt(2, limit + 1);
+            return readPage(stmt);
+        });
+        String nextToken = null;
+        if (users.size() > limit) {
+            users.remove(limit);
+            nextToken = ID_TOKEN_PREFIX + users.get(limit - 1).getId();
+        }
+        return new UserPage(users, nextToken);
+    }
+
+    /**
+     * Возвращает страницу пользователей, упорядоченных по имени (и по ID среди одинаковых имён).
+     *
+     * <p>Ключ страницы — пара {@code (username, id)}, поэтому одинаковые имена не теряются на границе страниц.
+     * Чтобы время запроса не росло с глубиной, нужен индекс по {@code (username, id)}.
+     * Пользователи с {@code username = NULL} в такую пагинацию не попадают.
+     *
+     * @param afterName имя последнего пользователя предыдущей страницы или {@code null} для первой страницы
+     * @param afterId   ID последнего пользователя предыдущей страницы (обязателен, если задан {@code afterName})
+     * @param limit     максимальное количество пользователей на странице (больше нуля)
+     * @return страница с токеном продолжения
+     * @throws SQLException при ошибках работы с БД
+     */
+    public UserPage findPageByUsername(String afterName, Long afterId, int limit) throws SQLException {
+        checkLimit(limit);
+        if (afterName != null) {
+            Objects.requireNonNull(afterId, "afterId must be set together with afterName");
+        }
+        var sql = afterName == null ? FIRST_PAGE_BY_USERNAME_SQL : PAGE_BY_USERNAME_SQL;
+        Supplier<Object[]> binds = () -> afterName == null
+                ? new Object[] {limit + 1}
+                : new Object[] {afterName, afterId, limit + 1};
+        var users = withConnection(DaoOperation.FIND_MANY, sql, binds, List::size, conn -> {
+            var stmt = prepare(conn, sql, Statement.NO_GENERATED_KEYS);
+            if (afterName == null) {
+                stmt.setInt(1, limit + 1);
+            } else {
+                stmt.setString(1, afterName);
+                stmt.setLong(2, afterId);
+                stmt.setInt(3, limit + 1);
+            }
+            return readPage(stmt);
+        });
+        String nextToken = null;
+        if (users.size() > limit) {
+            users.remove(limit);
+            var last = users.get(limit - 1);
+            var name = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(last.getName().getBytes(StandardCharsets.UTF_8));
+            nextToken = USERNAME_TOKEN_PREFIX + name + ":" + last.getId();
+        }
+        return new UserPage(users, nextToken);
+    }
+
+    /**
+     * Возвращает следующую страницу по токену из {@link UserPage#nextToken()}.
+     *
+     * <p>Токен сам хранит порядок сортировки, поэтому продолжать можно любую из пагинаций.
+     *
+     * @param token токен продолжения (не null)
+     * @param limit максимальное количество пользователей на странице (больше нуля)
+     * @return следующая страница
+     * @throws SQLException при ошибках работы с БД
+     * @throws IllegalArgumentException если токен повреждён
+     */
+    public UserPage continuePage(String token, int limit) throws SQLException {
+        Objects.requireNonNull(token, "Page token must not be null");
+        checkLimit(limit);
+        try {
+            if (token.startsWith(ID_TOKEN_PREFIX)) {
+                return findPage(Long.parseLong(token.substring(ID_TOKEN_PREFIX.length())), limit);
+            }
+            if (token.startsWith(USERNAME_TOKEN_PREFIX)) {
+                var key = token.substring(USERNAME_TOKEN_PREFIX.length());
+                var separator = key.lastIndexOf(':');
+                var name = new String(Base64.getUrlDecoder().decode(key.substring(0, separator)),
+                        StandardCharsets.UTF_8);
+                return findPageByUsername(name, Long.parseLong(key.substring(separator + 1)), limit);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed page token: " + token, e);
+        }
+        throw new IllegalArgumentException("Unknown page token: " + token);
+    }
+
+    private static List<User> readPage(PreparedStatement stmt) throws SQLException {
+        var users = new ArrayList<User>();
+        try (var rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                users.add(mapUser(rs));
+            }
+        }
+        return users;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+    }
+
+    /**
+     * Закрывает курсор, запрос и (если оно взято из {@link DataSource}) соединение потока {@link #streamAll(int)}.
+     */
+    private static void closeCursor(ResultSet rs, Statement stmt, Connection conn) {
+        try {
+            try {
+                rs.close();
+            } finally {
+                try {
+                    stmt.close();
+                } finally {
+                    if (conn != null) {
+                        conn.close();
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to close user stream", e);
+        }
+    }
+
+    /**
+     * Spliterator, который по одной превращает строки курсора в {@link User}.
+     */
+    private static final class UserCursor extends Spliterators.AbstractSpliterator<User> {
+        private final ResultSet rs;
+
+        UserCursor(ResultSet rs) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+            this.rs = rs;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super User> action) {
+            try {
+                if (!rs.next()) {
+                    return false;
+                }
+                action.accept(mapUser(rs));
+                return true;
+            } catch (SQLException e) {
+                throw new DataAccessException("Failed to read next user", e);
+            }
+        }
+    }
+
+    /**
+     * Собирает пользователя из текущей строки результата с колонками {@code id, username, phone, version}.
+     */
+    private static User mapUser(ResultSet rs) throws SQLException {
+        var user = new User(rs.getString("username"), rs.getString("phone"));
+        user.setId(rs.getLong("id"));
+        user.setVersion(rs.getLong("version"));
+        user.markClean();
+        return user;
+    }
+
+    /**
+     * @return метрики операций этого DAO
+     */
+    public DaoMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return суммарная статистика кэшей подготовленных запросов по всем соединениям
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheCounters.snapshot();
+    }
+
+    /**
+     * Возвращает подготовленный запрос из кэша, привязанного к физическому соединению.
+     *
+     * <p>Соединение из пула — это прокси, который на каждую выдачу новый, поэтому кэш ищется
+     * по физическому соединению ({@code unwrap(Connection.class)}). Когда для соединения
+     * создаётся новый кэш, кэши уже закрытых соединений выбрасываются.
+     */
+    private PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+        var physical = conn.isWrapperFor(Connection.class) ? conn.unwrap(Connection.class) : conn;
+        var cache = statementCaches.get(physical);
+        if (cache == null) {
+            statementCaches.keySet().removeIf(UserDAO::isClosed);
+            cache = new StatementCache(physical, statementCacheSize, statementCacheCounters);
+            statementCaches.put(physical, cache);
+        }
+        return cache.prepare(sql, autoGeneratedKeys);
+    }
+
+    private static boolean isClosed(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Выполняет работу с соединением: либо с общим, либо с взятым из {@link DataSource}.
+     *
+     * <p>Соединение, взятое из источника, закрывается (возвращается в пул) сразу после работы.
+     */
+    private <T> T withConnection(SqlWork<T> work) throws SQLException {
+        if (dataSource == null) {
+            return work.apply(connection);
+        }
+        try (var conn = dataSource.getConnection()) {
+            return work.apply(conn);
+        }
+    }
+
+    /**
+     * Варианты записи существующего пользователя.
+     */
+    private enum UpdateKind {
+        FULL("UPDATE users SET username = ?, phone = ?, version = version + 1 WHERE id = ?") {
+            @Override
+            void bind(PreparedStatement stmt, User user) throws SQLException {
+                stmt.setString(1, user.getName());
+                stmt.setString(2, user.getPhone());
+                stmt.setLong(3, user.getId());
+            }
+
+            @Override
+            Object[] binds(User user) {
+                return new Object[] {user.getName(), user.getPhone(), user.getId()};
+            }
+        },
+        NAME_ONLY("UPDATE users SET username = ?, version = version + 1 WHERE id = ?") {
+            @Override
+            void bind(PreparedStatement stmt, User user) throws SQLException {
+                stmt.setString(1, user.getName());
+                stmt.setLong(2, user.getId());
+            }
+
+            @Override
+            Object[] binds(User user) {
+                return new Object[] {user.getName(), user.getId()};
+            }
+        },
+        PHONE_ONLY("UPDATE users SET phone = ?, version = version + 1 WHERE id = ?") {
+            @Override
+            void bind(PreparedStatement stmt, User user) throws SQLException {
+                stmt.setString(1, user.getPhone());
+                stmt.setLong(2, user.getId());
+            }
+
+            @Override
+            Object[] binds(User user) {
+                return new Object[] {user.getPhone(), user.getId()};
+            }
+        },
+        // вставленная строка получает ту же версию, что и объект после записи (см. markUpdated)
+        MERGE("MERGE INTO users t USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), "
+                + "CAST(? AS VARCHAR(255)), CAST(? AS BIGINT))) s (id, username, phone, version) ON t.id = s.id "
+                + "WHEN MATCHED THEN UPDATE SET username = s.username, phone = s.phone, version = t.version + 1 "
+                + "WHEN NOT MATCHED THEN INSERT (id, username, phone, version) "
+                + "VALUES (s.id, s.username, s.phone, s.version + 1)") {
+            @Override
+            void bind(PreparedStatement stmt, User user) throws SQLException {
+                stmt.setLong(1, user.getId());
+                stmt.setString(2, user.getName());
+                stmt.setString(3, user.getPhone());
+                stmt.setLong(4, user.getVersion());
+            }
+
+            @Override
+            Object[] binds(User user) {
+                return new Object[] {user.getId(), user.getName(), user.getPhone(), user.getVersion()};
+            }
+        };
+
+        private final String sql;
+        private final String checkedSql;
+        private final int parameters;
+
+        UpdateKind(String sql) {
+            this.sql = sql;
+            this.checkedSql = sql + " AND version = ?";
+            this.parameters = (int) sql.chars().filter(c -> c == '?').count();
         }
+
+        /**
+         * @param checked {@code true} — запрос с проверкой версии для оптимистической блокировки (кроме MERGE)
+         */
+        String sql(boolean checked) {
+            return checked ? checkedSql : sql;
+        }
+
+        void bind(PreparedStatement stmt, User user, boolean checked) throws SQLException {
+            bind(stmt, user);
+            if (checked) {
+                stmt.setLong(parameters + 1, user.getVersion());
+            }
+        }
+
+        abstract void bind(PreparedStatement stmt, User user) throws SQLException;
+
+        abstract Object[] binds(User user);
+    }
+
+    /**
+     * Выполняет операцию, как {@link #withConnection(SqlWork)}, записывает её метрики
+     * и событие {@link JdbcStatementEvent}.
+     *
+     * <p>Время считается вместе с ожиданием соединения из источника; само ожидание попадает в событие отдельно.
+     *
+     * @param operation операция для метрик
+     * @param sql       шаблон выполняемого запроса
+     * @param binds     значения параметров для {@link SlowQueryLog}; вычисляются только для медленного запроса
+     * @param rows      количество строк в результате работы
+     * @param work      работа с соединением
+     */
+    private <T> T withConnection(DaoOperation operation, String sql, Supplier<Object[]> binds,
+                                 ToLongFunction<? super T> rows, SqlWork<T> work) throws SQLException {
+        var event = new JdbcStatementEvent();
+        event.begin();
+        var start = metrics.start();
+        long connectionWait = 0;
+        try {
+            T result;
+            if (dataSource == null) {
+                result = applyLogged(connection, operation, sql, binds, work);
+            } else {
+                var acquireStart = System.nanoTime();
+                try (var conn = dataSource.getConnection()) {
+                    connectionWait = System.nanoTime() - acquireStart;
+                    result = applyLogged(conn, operation, sql, binds, work);
+                }
+            }
+            var count = rows.applyAsLong(result);
+            metrics.success(operation, start, count);
+            commitEvent(event, operation, sql, count, connectionWait, false);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            metrics.failure(operation, start);
+            commitEvent(event, operation, sql, 0, connectionWait, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Выполняет работу и, если она дольше порога {@link SlowQueryLog}, записывает запрос в журнал.
+     *
+     * <p>Время считается без ожидания соединения, а план снимается на том же соединении, пока оно не возвращено.
+     */
+    private <T> T applyLogged(Connection conn, DaoOperation operation, String sql, Supplier<Object[]> binds,
+                              SqlWork<T> work) throws SQLException {
+        if (slowQueryLog == null) {
+            return work.apply(conn);
+        }
+        var began = System.nanoTime();
+        var result = work.apply(conn);
+        var elapsed = System.nanoTime() - began;
+        if (slowQueryLog.isSlow(elapsed)) {
+            slowQueryLog.record(operation, sql, binds.get(), elapsed, conn);
+        }
+        return result;
+    }
+
+    /**
+     * Завершает событие JFR и записывает его, если оно включено и длиннее порога.
+     *
+     * <p>Поля заполняются только после {@link JdbcStatementEvent#shouldCommit()}, чтобы быстрые
+     * запросы не тратили время на подсчёт параметров.
+     */
+    private static void commitEvent(JdbcStatementEvent event, DaoOperation operation, String sql, long rows,
+                                    long connectionWait, boolean failed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation.name();
+            event.sql = sql;
+            event.bindCount = (int) sql.chars().filter(c -> c == '?').count();
+            event.rows = rows;
+            event.connectionWait = connectionWait;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Работа с соединением, которая может бросить {@link SQLException}.
+     */
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T apply(Connection conn) throws SQLException;
     }
-}
\ No newline at end of file
+}
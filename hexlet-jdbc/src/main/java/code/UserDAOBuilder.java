@@ -0,0 +1,98 @@
+package code;
+
+import java.sql.Connection;
+import javax.sql.DataSource;
+
+/**
+ * Builder для {@link UserDAO} с дополнительными настройками.
+ *
+ * <p>Нужно задать ровно один источник соединений: {@link #withConnection(Connection)}
+ * или {@link #withDataSource(DataSource)}.
+ *
+ * <pre>{@code
+ * var userDAO = new UserDAOBuilder()
+ *         .withDataSource(pool)
+ *         .withIdAllocator(new SequenceIdAllocator("users_id_seq", 1_000))
+ *         .build();
+ * }</pre>
+ */
+public class UserDAOBuilder {
+    private Connection connection;
+    private DataSource dataSource;
+    private int statementCacheSize = UserDAO.DEFAULT_STATEMENT_CACHE_SIZE;
+    private IdAllocator idAllocator;
+    private boolean upsert;
+    private boolean optimisticLocking;
+    private DaoMetrics metrics = new DaoMetrics();
+    private SlowQueryLog slowQueryLog;
+
+    public UserDAOBuilder withConnection(Connection connection) {
+        this.connection = connection;
+        return this;
+    }
+
+    public UserDAOBuilder withDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        return this;
+    }
+
+    public UserDAOBuilder withStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * @param idAllocator источник ID для новых пользователей; {@code null} — ID генерирует БД
+     */
+    public UserDAOBuilder withIdAllocator(IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+        return this;
+    }
+
+    /**
+     * @param upsert {@code true} — пользователи с ID, не загруженные через DAO, записываются через
+     *               {@code MERGE}: вставляются, если строки нет, и обновляются, если есть.
+     *               Несовместим с {@link #withOptimisticLocking(boolean)}
+     */
+    public UserDAOBuilder withUpsert(boolean upsert) {
+        this.upsert = upsert;
+        return this;
+    }
+
+    /**
+     * @param optimisticLocking {@code true} — UPDATE записывает строку, только если её версия не изменилась
+     *                          с момента чтения, иначе бросает {@link OptimisticLockException}.
+     *                          Нужна колонка {@code version} (см. {@link UserSchema})
+     */
+    public UserDAOBuilder withOptimisticLocking(boolean optimisticLocking) {
+        this.optimisticLocking = optimisticLocking;
+        return this;
+    }
+
+    /**
+     * @param metrics метрики, в которые DAO записывает операции; один объект можно разделить между несколькими DAO
+     */
+    public UserDAOBuilder withMetrics(DaoMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @param slowQueryLog журнал медленных запросов; {@code null} — не вести журнал
+     */
+    public UserDAOBuilder withSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
+    }
+
+    public UserDAO build() {
+        if ((connection == null) == (dataSource == null)) {
+            throw new IllegalStateException("Exactly one of connection or dataSource must be set");
+        }
+        if (upsert && optimisticLocking) {
+            throw new IllegalStateException("Upsert mode cannot be combined with optimistic locking");
+        }
+        return new UserDAO(connection, dataSource, statementCacheSize, idAllocator, upsert, optimisticLocking,
+                metrics, slowQueryLog);
+    }
+}
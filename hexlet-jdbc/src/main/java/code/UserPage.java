@@ -0,0 +1,27 @@
+package code;
+
+import java.util.List;
+
+/**
+ * Страница пользователей, полученная keyset-пагинацией
+ * ({@link UserDAO#findPage(Long, int)}, {@link UserDAO#findPageByUsername(String, Long, int)}).
+ *
+ * <p>Вместо номера страницы или OFFSET страница хранит токен продолжения — ключ последней строки.
+ * Следующая страница запрашивается через {@link UserDAO#continuePage(String, int)}.
+ *
+ * @param users     пользователи на странице
+ * @param nextToken токен следующей страницы или {@code null}, если это последняя страница
+ */
+public record UserPage(List<User> users, String nextToken) {
+
+    public UserPage {
+        users = List.copyOf(users);
+    }
+
+    /**
+     * @return {@code true}, если после этой страницы есть ещё строки
+     */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,67 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Основные операции хранилища пользователей.
+ *
+ * <p>Реализуется {@link UserDAO}, а также декораторами над ним (паттерн "Декоратор"),
+ * которые добавляют поведение, не меняя клиентский код. Например, {@link CachingUserRepository}
+ * отдаёт часто запрашиваемых пользователей из памяти:
+ *
+ * <pre>{@code
+ * UserRepository users = new UserDAO(pool);
+ * users = new CachingUserRepository(users, 10_000, Duration.ofMinutes(5));
+ * }</pre>
+ */
+public interface UserRepository {
+
+    /**
+     * Сохраняет пользователя: INSERT, если {@code id == null}, иначе UPDATE.
+     *
+     * @param user сохраняемый пользователь (не null)
+     * @throws SQLException при ошибках работы с БД
+     */
+    void save(User user) throws SQLException;
+
+    /**
+     * Удаляет пользователя по его ID.
+     *
+     * @param user удаляемый пользователь (должен иметь ID)
+     * @throws SQLException при ошибках работы с БД
+     */
+    void delete(User user) throws SQLException;
+
+    /**
+     * Находит пользователя по ID.
+     *
+     * @param id идентификатор пользователя
+     * @return {@link Optional} с пользователем или пустой Optional
+     * @throws SQLException при ошибках работы с БД
+     */
+    Optional<User> find(Long id) throws SQLException;
+
+    /**
+     * Находит пользователей по коллекции ID.
+     *
+     * <p>Реализация по умолчанию вызывает {@link #find(Long)} для каждого ID.
+     *
+     * @param ids идентификаторы пользователей (не null)
+     * @return найденные пользователи по ID
+     * @throws SQLException при ошибках работы с БД
+     */
+    default Map<Long, User> findAll(Collection<Long> ids) throws SQLException {
+        var result = new HashMap<Long, User>();
+        for (var id : ids) {
+            var user = find(id);
+            if (user.isPresent()) {
+                result.put(id, user.get());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package code;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Создание схемы таблицы {@code users} вместе со вторичными индексами.
+ *
+ * <p>Все команды идемпотентны ({@code IF NOT EXISTS}), поэтому их можно выполнять при каждом старте приложения.
+ *
+ * <h2>Индексы:</h2>
+ * <ul>
+ *   <li>{@code users_username_id (username, id)} — поиск по имени ({@link UserDAO#findByUsername(String)}),
+ *       по префиксу имени ({@link UserDAO#findByUsernamePrefix(String, int)}), сортировка по имени
+ *       и keyset-пагинация {@link UserDAO#findPageByUsername(String, Long, int)}.</li>
+ *   <li>{@code users_phone (phone)} — поиск по телефону ({@link UserDAO#findByPhone(String)}).</li>
+ * </ul>
+ * Без них каждый такой запрос читает всю таблицу.
+ *
+ * <h2>Версия строки:</h2>
+ * Колонка {@code version} увеличивается при каждом обновлении через {@link UserDAO} и нужна для оптимистической
+ * блокировки ({@link UserDAOBuilder#withOptimisticLocking(boolean)}). В таблицу, созданную до её появления,
+ * {@link #createTable(Connection)} добавляет её сам.
+ */
+public final class UserSchema {
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS users (
+            id BIGINT PRIMARY KEY AUTO_INCREMENT,
+            username VARCHAR(255),
+            phone VARCHAR(255),
+            version BIGINT DEFAULT 0 NOT NULL
+        )
+        """;
+    private static final String ADD_VERSION_SQL =
+            "ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL";
+    private static final String CREATE_USERNAME_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS users_username_id ON users (username, id)";
+    private static final String CREATE_PHONE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS users_phone ON users (phone)";
+
+    private UserSchema() {
+    }
+
+    /**
+     * Создаёт таблицу и индексы, если их ещё нет.
+     *
+     * @param conn соединение с БД
+     * @throws SQLException при ошибках работы с БД
+     */
+    public static void create(Connection conn) throws SQLException {
+        createTable(conn);
+        createIndexes(conn);
+    }
+
+    /**
+     * Создаёт только таблицу, без вторичных индексов (например, перед массовой загрузкой).
+     * В существующую таблицу без колонки {@code version} добавляет её.
+     *
+     * @param conn соединение с БД
+     * @throws SQLException при ошибках работы с БД
+     */
+    public static void createTable(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+            stmt.execute(ADD_VERSION_SQL);
+        }
+    }
+
+    /**
+     * Создаёт вторичные индексы, если их ещё нет.
+     *
+     * @param conn соединение с БД
+     * @throws SQLException при ошибках работы с БД
+     */
+    public static void createIndexes(Connection conn) throws SQLException {
+        try (var stmt = conn.createStatement()) {
+            stmt.execute(CREATE_USERNAME_INDEX_SQL);
+            stmt.execute(CREATE_PHONE_INDEX_SQL);
+        }
+    }
+}
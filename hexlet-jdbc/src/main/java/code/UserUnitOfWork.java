@@ -0,0 +1,141 @@
+package code;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Единица работы (unit of work) над {@link UserDAO}: изменения за весь запрос записываются одной транзакцией.
+ *
+ * <p>Каждый вызов {@link UserDAO#save(User)} в режиме auto-commit — это отдельная транзакция со своим
+ * сбросом журнала на диск. Единица работы только запоминает, что сохранить и что удалить, а при
+ * {@link #commit()} группирует изменения в пакеты и коммитит их один раз:
+ *
+ * <pre>{@code
+ * try (var work = userDAO.beginUnitOfWork()) {
+ *     work.save(new User("alice", "123"));
+ *     bob.setPhone("456");
+ *     work.save(bob);
+ *     work.delete(carol);
+ *     work.commit();
+ * }
+ * }</pre>
+ *
+ * <h2>Как записывается:</h2>
+ * <ul>
+ *   <li>Сначала вставки, затем обновления, сгруппированные по набору изменённых колонок, затем удаления.
+ *       Вставки и обновления идут через {@code addBatch}/{@code executeBatch}, удаления — запросом
+ *       {@code WHERE id = ANY(?)}; всё кусками по {@code batchSize}.</li>
+ *   <li>Обновления и удаления упорядочены по ID, а группы обновлений — в фиксированном порядке: параллельные
+ *       единицы работы над одними строками блокируют их в одном порядке и не попадают во взаимную блокировку.</li>
+ *   <li>Неизменённые пользователи не записываются (см. {@link User#isDirty()}). Пользователь, сохранённый
+ *       несколько раз — в том числе разными объектами с одним ID, — записывается один раз в последнем
+ *       состоянии; удаление отменяет его сохранение.</li>
+ *   <li>Транзакция идёт с заданным уровнем изоляции, после неё соединение возвращается к прежнему.</li>
+ *   <li>При любой ошибке (в том числе {@link OptimisticLockException}) транзакция откатывается целиком:
+ *       в БД не остаётся ничего, а объекты {@link User} не получают ID и не теряют отметок об изменениях.</li>
+ * </ul>
+ *
+ * <p>Объект одноразовый и не потокобезопасный. После {@link #commit()} или {@link #rollback()} он закрыт;
+ * {@link #close()} без коммита отбрасывает накопленные изменения.
+ */
+public class UserUnitOfWork implements AutoCloseable {
+    private final UserDAO userDAO;
+    private final int isolationLevel;
+    private final int batchSize;
+    private final Set<User> saves = new LinkedHashSet<>();
+    private final Set<Long> deletes = new LinkedHashSet<>();
+    private boolean finished;
+
+    UserUnitOfWork(UserDAO userDAO, int isolationLevel, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.userDAO = Objects.requireNonNull(userDAO, "UserDAO must not be null");
+        this.isolationLevel = isolationLevel;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Запоминает пользователя для вставки (если {@code id == null}) или обновления.
+     *
+     * <p>Запоминается сам объект, поэтому изменения, сделанные в нём до {@link #commit()}, тоже будут записаны.
+     *
+     * @param user сохраняемый пользователь (не null)
+     */
+    public void save(User user) {
+        ensureOpen();
+        Objects.requireNonNull(user, "User must not be null");
+        if (user.getId() != null && deletes.contains(user.getId())) {
+            throw new IllegalStateException("User " + user.getId() + " is already scheduled for deletion");
+        }
+        saves.add(user);
+    }
+
+    /**
+     * Запоминает пользователя для удаления. Для ещё не вставленного пользователя просто отменяет его вставку.
+     *
+     * @param user удаляемый пользователь (не null)
+     */
+    public void delete(User user) {
+        ensureOpen();
+        Objects.requireNonNull(user, "User must not be null");
+        var id = user.getId();
+        saves.removeIf(saved -> saved == user || id != null && id.equals(saved.getId()));
+        if (id != null) {
+            deletes.add(id);
+        }
+    }
+
+    /**
+     * @return сколько пользователей ждут записи или удаления
+     */
+    public int size() {
+        return saves.size() + deletes.size();
+    }
+
+    /**
+     * Записывает все накопленные изменения одной транзакцией.
+     *
+     * @return итоги записи
+     * @throws OptimisticLockException если в режиме оптимистической блокировки строку уже изменили; всё откачено
+     * @throws SQLException            при ошибках работы с БД; всё откачено
+     * @throws IllegalStateException   если единица работы уже закрыта
+     */
+    public UnitOfWorkStats commit() throws SQLException {
+        ensureOpen();
+        finished = true;
+        var stats = userDAO.commitUnitOfWork(new ArrayList<>(saves), new ArrayList<>(deletes), isolationLevel,
+                batchSize);
+        saves.clear();
+        deletes.clear();
+        return stats;
+    }
+
+    /**
+     * Отбрасывает накопленные изменения. В БД к этому моменту ничего не записано, поэтому она не затрагивается.
+     */
+    public void rollback() {
+        finished = true;
+        saves.clear();
+        deletes.clear();
+    }
+
+    /**
+     * То же, что {@link #rollback()}, если единица работы ещё не закоммичена.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            rollback();
+        }
+    }
+
+    private void ensureOpen() {
+        if (finished) {
+            throw new IllegalStateException("Unit of work is already committed or rolled back");
+        }
+    }
+}
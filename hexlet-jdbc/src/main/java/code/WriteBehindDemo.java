@@ -0,0 +1,71 @@
+package code;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Сравнение частых обновлений телефона через {@link UserDAO#save(User)} напрямую
+ * и через {@link WriteBehindUserRepository}.
+ *
+ * <p>Небольшое число пользователей получает много обновлений подряд, как при синхронизации устройств.
+ * Напрямую каждое обновление — отдельный UPDATE; с write-behind в БД уходят только последние версии пакетами.
+ *
+ * <h2>Используемая БД:</h2>
+ * H2 в memory-режиме: {@code jdbc:h2:mem:hexlet_write_behind}, соединения из {@link ConnectionPool}.
+ */
+public class WriteBehindDemo {
+    private static final int USERS = 1_000;
+    private static final int UPDATES = 200_000;
+
+    public static void main(String[] args) throws SQLException {
+        try (var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:hexlet_write_behind;DB_CLOSE_DELAY=-1")
+                .withMaxSize(2).build()) {
+            try (var connection = pool.getConnection()) {
+                UserSchema.createTable(connection);
+            }
+
+            var userDAO = new UserDAO(pool);
+            var users = new ArrayList<User>(USERS);
+            for (var i = 0; i < USERS; i++) {
+                users.add(new User("user_" + i, "555" + i));
+            }
+            userDAO.saveAll(users);
+
+            var start = System.nanoTime();
+            churn(userDAO, users);
+            System.out.printf("UserDAO:                   %,.0f updates/sec%n", rate(start));
+
+            start = System.nanoTime();
+            try (var writeBehind = new WriteBehindUserRepository(userDAO, 500, Duration.ofMillis(50), 5_000)) {
+                churn(writeBehind, users);
+                writeBehind.flush();
+                System.out.printf("WriteBehindUserRepository: %,.0f updates/sec (including final flush)%n", rate(start));
+                System.out.println("Write-behind: " + writeBehind.getStats());
+                System.out.printf("Coalescing factor: %.1f%n", writeBehind.getStats().coalescingFactor());
+            }
+
+            var last = users.get(USERS - 1);
+            System.out.println("Stored phone of " + last.getName() + ": "
+                    + userDAO.find(last.getId()).orElseThrow().getPhone() + ", expected " + last.getPhone());
+        }
+    }
+
+    private static void churn(UserRepository repository, List<User> users) throws SQLException {
+        var random = ThreadLocalRandom.current();
+        for (var i = 0; i < UPDATES; i++) {
+            var user = users.get(random.nextInt(users.size()));
+            user.setPhone("7" + random.nextInt(1_000_000_000));
+            repository.save(user);
+        }
+        var last = users.get(users.size() - 1);
+        last.setPhone("final");
+        repository.save(last);
+    }
+
+    private static double rate(long start) {
+        return (UPDATES + 1) * 1_000_000_000.0 / (System.nanoTime() - start);
+    }
+}
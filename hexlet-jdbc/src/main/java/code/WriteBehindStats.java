@@ -0,0 +1,22 @@
+package code;
+
+/**
+ * Снимок статистики {@link WriteBehindUserRepository}.
+ *
+ * @param saves       сколько обновлений принято в буфер
+ * @param coalesced   сколько из них поглощено более поздним обновлением того же пользователя
+ * @param flushedRows сколько пользователей записано в БД
+ * @param flushes     сколько пакетов записано
+ * @param failures    сколько раз запись пакета завершилась ошибкой
+ * @param pending     сколько пользователей ждёт записи сейчас
+ */
+public record WriteBehindStats(long saves, long coalesced, long flushedRows, long flushes, long failures,
+                               int pending) {
+
+    /**
+     * @return во сколько раз меньше строк записано в БД, чем принято обновлений
+     */
+    public double coalescingFactor() {
+        return flushedRows == 0 ? 0 : (double) saves / flushedRows;
+    }
+}
@@ -0,0 +1,380 @@
+package code;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Декоратор над {@link UserDAO}, который откладывает обновления и записывает их пакетами (write-behind).
+ *
+ * <p>{@link #save(User)} существующего пользователя не идёт в БД, а кладёт копию пользователя в буфер —
+ * по одной последней версии на ID. Если пользователя обновляют много раз в секунду (например, телефон
+ * при синхронизации устройств), в БД попадает только последнее состояние, а количество записей
+ * определяется числом пакетов, а не числом вызовов.
+ *
+ * <h2>Когда буфер записывается:</h2>
+ * <ul>
+ *   <li>По размеру: как только в буфере набирается {@code batchSize} пользователей.</li>
+ *   <li>По времени: раз в {@code flushInterval}, даже если пакет не набрался.</li>
+ *   <li>Явно через {@link #flush()} и при {@link #close()} — после него всё принятое лежит в БД.</li>
+ * </ul>
+ * Запись идёт через {@link UserDAO#saveAll(java.util.Collection, int)} в фоновом потоке.
+ *
+ * <h2>Особенности:</h2>
+ * <ul>
+ *   <li>Обратное давление: в буфере не больше {@code maxPending} разных пользователей. Когда он полон,
+ *       {@link #save(User)} нового ID ждёт, пока запись освободит место; обновление ID, который уже
+ *       в буфере, не ждёт никогда.</li>
+ *   <li>При слиянии версий сохраняются изменённые поля всех версий (см. {@link User#isDirty()}),
+ *       поэтому UPDATE по изменённым колонкам ничего не теряет.</li>
+ *   <li>Новые пользователи ({@code id == null}) записываются сразу, потому что ID нужен вызывающему коду.</li>
+ *   <li>{@link #find(Long)} видит ещё не записанные изменения, в том числе пакет, который записывается
+ *       прямо сейчас и ещё не закоммичен; {@link #delete(User)} выбрасывает их
+ *       и удаляет пользователя сразу. ID удалённого пользователя запоминается, и последующий
+ *       {@link #save(User)} с ним отклоняется — иначе отложенный MERGE вернул бы удалённую строку.</li>
+ *   <li>Если запись пакета не удалась, в буфер возвращаются только незакоммиченные пользователи
+ *       (более поздние версии важнее), и они записываются при следующей попытке.</li>
+ *   <li>Как только начался {@link #close()}, {@link #save(User)} отклоняется, а уже начатые сохранения
+ *       успевают попасть в буфер до финальной записи.</li>
+ * </ul>
+ *
+ * <h2>Замечание:</h2>
+ * До записи изменения живут только в памяти процесса: при аварийном завершении JVM они теряются.
+ * Закрывайте репозиторий через try-with-resources или в shutdown hook.
+ * ID удалённых пользователей хранятся до закрытия репозитория — по {@code Long} на удаление.
+ * Слияние версий — это "последняя запись побеждает", поэтому DAO с оптимистической блокировкой
+ * ({@link UserDAOBuilder#withOptimisticLocking(boolean)}) сюда не подходит: записанные копии получают новую
+ * версию, а объекты вызывающего кода — нет.
+ */
+public class WriteBehindUserRepository implements UserRepository, AutoCloseable {
+    private final UserDAO delegate;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+
+    private final Map<Long, User> pending = new ConcurrentHashMap<>();
+    private final Map<Long, User> inFlight = new ConcurrentHashMap<>();
+    private final Set<Long> deleted = ConcurrentHashMap.newKeySet();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Semaphore capacity;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile SQLException lastFailure;
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param delegate      DAO, в который записываются пакеты (не null)
+     * @param batchSize     сколько пользователей записывать одним пакетом (больше нуля)
+     * @param flushInterval как часто записывать буфер, даже если пакет не набрался (больше нуля)
+     * @param maxPending    сколько разных пользователей может ждать записи (не меньше {@code batchSize})
+     */
+    public WriteBehindUserRepository(UserDAO delegate, int batchSize, Duration flushInterval, int maxPending) {
+        if (batchSize <= 0 || maxPending < batchSize) {
+            throw new IllegalArgumentException("Expected 0 < batchSize <= maxPending, got batchSize " + batchSize
+                    + ", maxPending " + maxPending);
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushInterval);
+        }
+        this.delegate = Objects.requireNonNull(delegate, "Delegate must not be null");
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.capacity = new Semaphore(maxPending);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "write-behind-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalNanos, flushIntervalNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Ставит пользователя в очередь на запись; новый пользователь записывается сразу.
+     *
+     * @param user сохраняемый пользователь (не null)
+     * @throws SQLException при ошибке записи нового пользователя, при прерывании ожидания места в буфере,
+     *                      если буфер полон, а запись в БД продолжает завершаться ошибкой, если пользователь
+     *                      уже удалён через {@link #delete(User)} или репозиторий закрывается
+     */
+    @Override
+    public void save(User user) throws SQLException {
+        var lock = closeLock.readLock();
+        lock.lock();
+        try {
+            ensureOpen();
+            if (user.getId() == null) {
+                delegate.save(user);
+                return;
+            }
+            ensureNotDeleted(user.getId());
+            var snapshot = user.copy();
+            saves.increment();
+            if (pending.computeIfPresent(user.getId(), (id, older) -> coalesce(snapshot, older)) != null) {
+                coalesced.increment();
+                return;
+            }
+            acquireCapacity();
+            var added = new boolean[1];
+            var rejected = new boolean[1];
+            pending.compute(user.getId(), (id, older) -> {
+                if (deleted.contains(id)) {
+                    rejected[0] = true;
+                    return older;
+                }
+                added[0] = older == null;
+                return older == null ? snapshot : coalesce(snapshot, older);
+            });
+            if (!added[0]) {
+                capacity.release();
+            }
+            if (rejected[0]) {
+                ensureNotDeleted(user.getId());
+            } else if (!added[0]) {
+                coalesced.increment();
+            }
+            if (pending.size() >= batchSize) {
+                requestFlush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет пользователя сразу, отбрасывая его незаписанные изменения. После этого {@link #save(User)}
+     * с тем же ID отклоняется.
+     */
+    @Override
+    public void delete(User user) throws SQLException {
+        var id = user.getId();
+        flushLock.lock();
+        try {
+            var dropped = new boolean[1];
+            // метка ставится под блокировкой ключа, поэтому параллельный save не вернёт пользователя в буфер
+            pending.compute(id, (key, buffered) -> {
+                deleted.add(key);
+                dropped[0] = buffered != null;
+                return null;
+            });
+            if (dropped[0]) {
+                capacity.release();
+            }
+            try {
+                delegate.delete(user);
+            } catch (SQLException | RuntimeException e) {
+                deleted.remove(id);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Находит пользователя с учётом ещё не записанных изменений.
+     */
+    @Override
+    public Optional<User> find(Long id) throws SQLException {
+        var buffered = pending.get(id);
+        if (buffered == null) {
+            // takeBatch() кладёт пользователя сюда раньше, чем он пропадает из pending
+            buffered = inFlight.get(id);
+        }
+        if (buffered != null) {
+            return Optional.of(buffered.copy());
+        }
+        return delegate.find(id);
+    }
+
+    /**
+     * Записывает всех пользователей, которые были в буфере на момент вызова.
+     *
+     * @throws SQLException при ошибке записи; незаписанные пользователи остаются в буфере,
+     *                      а уже закоммиченные куски пакета туда не возвращаются
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            var remaining = pending.size();
+            while (remaining > 0) {
+                var batch = takeBatch(Math.min(remaining, batchSize));
+                if (batch.isEmpty()) {
+                    return;
+                }
+                remaining -= batch.size();
+                try {
+                    delegate.saveAll(batch, batchSize);
+                } catch (SQLException e) {
+                    requeue(batch);
+                    failures.increment();
+                    lastFailure = e;
+                    throw e;
+                } catch (RuntimeException e) {
+                    requeue(batch);
+                    failures.increment();
+                    throw e;
+                } finally {
+                    batch.forEach(user -> inFlight.remove(user.getId()));
+                }
+                capacity.release(batch.size());
+                flushedRows.add(batch.size());
+                flushes.increment();
+                lastFailure = null;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return текущая статистика
+     */
+    public WriteBehindStats getStats() {
+        return new WriteBehindStats(saves.sum(), coalesced.sum(), flushedRows.sum(), flushes.sum(), failures.sum(),
+                pending.size());
+    }
+
+    /**
+     * Отклоняет новые сохранения, останавливает фоновую запись и записывает всё, что осталось в буфере.
+     *
+     * @throws SQLException если остаток не удалось записать; он остаётся в буфере
+     */
+    @Override
+    public void close() throws SQLException {
+        // ждём сохранения, которые уже прошли проверку ensureOpen(), — их данные должны попасть в финальный flush()
+        var lock = closeLock.writeLock();
+        lock.lock();
+        boolean first;
+        try {
+            first = closed.compareAndSet(false, true);
+        } finally {
+            lock.unlock();
+        }
+        if (first) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Забирает из буфера до {@code limit} пользователей. Пока пакет пишется, они лежат в {@code inFlight},
+     * чтобы {@link #find(Long)} не прочитал из БД состояние до записи.
+     */
+    private List<User> takeBatch(int limit) {
+        var batch = new ArrayList<User>(limit);
+        for (var id : pending.keySet()) {
+            pending.computeIfPresent(id, (key, user) -> {
+                inFlight.put(key, user);
+                batch.add(user);
+                return null;
+            });
+            if (batch.size() == limit) {
+                break;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Возвращает незаписанную часть пакета в буфер, не затирая более поздние версии.
+     * {@link UserDAO#saveAll(java.util.Collection, int)} коммитит пакет по кускам и помечает записанных
+     * пользователей неизменёнными, поэтому уже закоммиченные куски повторно не ставятся в очередь.
+     */
+    private void requeue(List<User> batch) {
+        for (var failed : batch) {
+            if (!failed.isDirty()) {
+                capacity.release();
+                continue;
+            }
+            var added = new boolean[1];
+            pending.compute(failed.getId(), (id, newer) -> {
+                added[0] = newer == null;
+                return newer == null ? failed : coalesce(newer, failed);
+            });
+            if (!added[0]) {
+                capacity.release();
+            }
+        }
+    }
+
+    private static User coalesce(User newer, User older) {
+        newer.absorbChanges(older);
+        return newer;
+    }
+
+    private void acquireCapacity() throws SQLException {
+        try {
+            while (!capacity.tryAcquire(flushIntervalNanos, TimeUnit.NANOSECONDS)) {
+                requestFlush();
+                var failure = lastFailure;
+                if (failure != null) {
+                    throw new SQLException("Write-behind buffer is full and flushing fails", failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for write-behind buffer space", e);
+        }
+    }
+
+    private void requestFlush() {
+        if (!closed.get() && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // репозиторий закрывается: остаток запишет close()
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (SQLException | RuntimeException ignored) {
+            // ошибка учтена в статистике, пакет вернулся в буфер и будет записан при следующей попытке
+        }
+    }
+
+    private void ensureNotDeleted(Long id) throws SQLException {
+        if (deleted.contains(id)) {
+            throw new SQLException("User " + id + " has been deleted through this write-behind repository");
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Write-behind repository is closed");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AsyncUserDAOTest {
+
+    @Test
+    void errorInOperationCompletesFuture() {
+        var error = new StackOverflowError();
+        var repository = new UserRepository() {
+            @Override
+            public void save(User user) {
+            }
+
+            @Override
+            public void delete(User user) {
+            }
+
+            @Override
+            public Optional<User> find(Long id) {
+                throw error;
+            }
+        };
+        try (var users = new AsyncUserDAO(repository, 2)) {
+            var failure = assertThrows(ExecutionException.class, () -> users.find(1L).get(10, TimeUnit.SECONDS));
+            assertSame(error, failure.getCause());
+        }
+    }
+}
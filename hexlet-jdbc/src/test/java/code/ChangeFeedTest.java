@@ -0,0 +1,62 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChangeFeedTest {
+    private static final Duration GAP_TIMEOUT = Duration.ofMillis(200);
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:test_change_feed;DB_CLOSE_DELAY=-1").withMaxSize(2)
+                .build();
+        try (var conn = pool.getConnection()) {
+            UserSchema.create(conn);
+            ChangeFeed.install(conn);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var conn = pool.getConnection(); var stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        pool.close();
+    }
+
+    @Test
+    void consumerAboveGapDoesNotResetTimerOfConsumerBelowIt() throws Exception {
+        var userDAO = new UserDAOBuilder().withDataSource(pool).build();
+        userDAO.save(new User("a", "1"));
+        try (var conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            new UserDAO(conn).save(new User("rolled back", "2"));
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        userDAO.save(new User("c", "3"));
+
+        var feed = new ChangeFeed(pool, GAP_TIMEOUT);
+        var ahead = feed.poll(0, 10);
+        assertEquals(1, ahead.watermark());
+        Thread.sleep(GAP_TIMEOUT.toMillis());
+        ahead = feed.poll(ahead.watermark(), 10);
+        assertEquals(3, ahead.watermark());
+
+        // второй потребитель ждёт у того же пропуска, пока первый опрашивает журнал выше него
+        var behind = 1L;
+        var deadline = System.nanoTime() + GAP_TIMEOUT.multipliedBy(10).toNanos();
+        while (behind < 3 && System.nanoTime() < deadline) {
+            feed.poll(ahead.watermark(), 10);
+            behind = feed.poll(behind, 10).watermark();
+            Thread.sleep(10);
+        }
+        assertEquals(3, behind);
+    }
+}
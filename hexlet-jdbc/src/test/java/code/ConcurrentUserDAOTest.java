@@ -0,0 +1,94 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Один {@link UserDAO}, разделённый между потоками: сценарий {@link ConcurrentStressDemo} с проверками.
+ */
+class ConcurrentUserDAOTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 300;
+
+    @Test
+    void sharedDaoOverConnectionPool() throws Exception {
+        var url = "jdbc:h2:mem:test_stress_pool;DB_CLOSE_DELAY=-1";
+        try (var pool = new ConnectionPoolBuilder().withUrl(url).withMaxSize(THREADS).build()) {
+            stress(url, pool);
+        }
+    }
+
+    @Test
+    void sharedDaoOverThreadConfinedConnections() throws Exception {
+        var url = "jdbc:h2:mem:test_stress_confined;DB_CLOSE_DELAY=-1";
+        try (var confined = new ThreadConfinedDataSource(url)) {
+            stress(url, confined);
+        }
+    }
+
+    private static void stress(String url, DataSource dataSource) throws Exception {
+        try (var connection = DriverManager.getConnection(url)) {
+            UserSchema.createTable(connection);
+            var userDAO = new UserDAO(dataSource);
+            var tasks = new ArrayList<Callable<Integer>>();
+            for (var t = 0; t < THREADS; t++) {
+                var worker = t;
+                tasks.add(() -> work(userDAO, worker));
+            }
+
+            var executor = Executors.newFixedThreadPool(THREADS);
+            var expectedRows = 0;
+            try {
+                for (var future : executor.invokeAll(tasks)) {
+                    expectedRows += future.get(1, TimeUnit.MINUTES);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            try (var stmt = connection.createStatement(); var rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                rs.next();
+                assertEquals(expectedRows, rs.getLong(1));
+            }
+            var stats = userDAO.getMetrics().snapshot();
+            assertEquals(0, stats.values().stream().mapToLong(OperationStats::errors).sum());
+            try (var stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
+
+    private static int work(UserDAO userDAO, int worker) throws SQLException {
+        var random = ThreadLocalRandom.current();
+        var kept = 0;
+        for (var i = 0; i < ITERATIONS; i++) {
+            var user = new User("worker_" + worker + "_" + i, "555" + i);
+            userDAO.save(user);
+
+            var found = userDAO.find(user.getId()).orElseThrow();
+            assertEquals(user.getName(), found.getName());
+
+            found.setPhone("777" + i);
+            userDAO.save(found);
+            assertEquals("777" + i, userDAO.find(user.getId()).orElseThrow().getPhone());
+
+            if (random.nextBoolean()) {
+                userDAO.delete(found);
+                assertTrue(userDAO.find(user.getId()).isEmpty());
+            } else {
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,31 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+
+    @Test
+    void returnedConnectionGetsInitialSettingsBack() throws Exception {
+        try (var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:test_pool_reset;DB_CLOSE_DELAY=-1")
+                .withMaxSize(1).build()) {
+            int isolation;
+            try (var connection = pool.getConnection()) {
+                isolation = connection.getTransactionIsolation();
+                connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                connection.setReadOnly(true);
+                connection.setAutoCommit(false);
+            }
+            try (var connection = pool.getConnection()) {
+                assertEquals(isolation, connection.getTransactionIsolation());
+                assertFalse(connection.isReadOnly());
+                assertTrue(connection.getAutoCommit());
+            }
+            assertEquals(1, pool.getStats().created());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class DaoMetricsTest {
+
+    @Test
+    void percentilesNeverExceedMaximum() throws Exception {
+        var metrics = new DaoMetrics();
+        var start = metrics.start();
+        Thread.sleep(3);
+        metrics.success(DaoOperation.FIND, start, 1);
+
+        var stats = metrics.snapshot().get(DaoOperation.FIND);
+        assertEquals(1, stats.count());
+        assertTrue(stats.p50Nanos() <= stats.maxNanos());
+        assertTrue(stats.p999Nanos() <= stats.maxNanos());
+    }
+}
@@ -0,0 +1,54 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DatabaseBootstrapTest {
+    private static final int USERS = 1_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void memoryBootstrapRestoresSnapshotIntoWritableDatabase() throws Exception {
+        var bootstrap = new DatabaseBootstrap(directory.resolve("users.mv.db"));
+
+        var seeded = bootstrap.bootstrapMemory("test_boot_seeded", DatabaseBootstrapTest::seed);
+        assertEquals(BootstrapStats.Source.SEEDED, seeded.source());
+        assertEquals(USERS, seeded.rows());
+
+        var restored = bootstrap.bootstrapMemory("test_boot_restored", conn -> {
+            throw new AssertionError("Snapshot exists, seeding is not expected");
+        });
+        assertEquals(BootstrapStats.Source.SNAPSHOT, restored.source());
+        assertEquals(USERS, restored.rows());
+
+        try (var conn = DriverManager.getConnection(DatabaseBootstrap.memoryUrl("test_boot_restored"))) {
+            var userDAO = new UserDAO(conn);
+            userDAO.save(new User("after_restore", "1"));
+            assertEquals(1, userDAO.findByUsername("after_restore").size());
+            try (var stmt = conn.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS DELETE FILES");
+            }
+        }
+        try (var conn = DriverManager.getConnection(DatabaseBootstrap.memoryUrl("test_boot_seeded"));
+             var stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS DELETE FILES");
+        }
+    }
+
+    private static void seed(Connection conn) throws SQLException {
+        var users = new ArrayList<User>(USERS);
+        for (var i = 0; i < USERS; i++) {
+            users.add(new User("seed_" + i, "555" + i));
+        }
+        new UserDAO(conn).saveAll(users);
+    }
+}
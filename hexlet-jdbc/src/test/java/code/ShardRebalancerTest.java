@@ -0,0 +1,80 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ShardRebalancerTest {
+    private final List<ConnectionPool> pools = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (var pool : pools) {
+            try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+            pool.close();
+        }
+    }
+
+    @Test
+    void keepsRowsWhenTargetIsAnotherDataSourceForSameDatabase() throws Exception {
+        var source = pool("test_rebalance_same");
+        var sameDatabase = pool("test_rebalance_same");
+        var users = seed(List.of(source), 500);
+
+        var stats = new ShardRebalancer(100).rebalance(List.of(source), List.of(sameDatabase));
+
+        assertEquals(0, stats.moved());
+        try (var sharded = new ShardedUserDAO(List.of(sameDatabase))) {
+            assertEquals(users.size(), sharded.findAll(users.stream().map(User::getId).toList()).size());
+        }
+    }
+
+    @Test
+    void movesRowsToNewShards() throws Exception {
+        var before = List.of(pool("test_rebalance_a"), pool("test_rebalance_b"));
+        var users = seed(before, 1_000);
+        var after = List.of(pool("test_rebalance_a"), pool("test_rebalance_b"), pool("test_rebalance_c"));
+
+        new ShardRebalancer(100).rebalance(before, after);
+
+        try (var sharded = new ShardedUserDAO(after)) {
+            assertEquals(users.size(), sharded.findAll(users.stream().map(User::getId).toList()).size());
+        }
+    }
+
+    @Test
+    void rejectsSameDatabaseTwiceInTargets() throws Exception {
+        var source = pool("test_rebalance_dup");
+        var target = pool("test_rebalance_dup_target");
+        var duplicate = pool("test_rebalance_dup_target");
+        seed(List.of(source), 10);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardRebalancer(100).rebalance(List.of(source), List.of(target, duplicate)));
+    }
+
+    private ConnectionPool pool(String name) {
+        var pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1").withMaxSize(2)
+                .build();
+        pools.add(pool);
+        return pool;
+    }
+
+    private static List<User> seed(List<ConnectionPool> shards, int count) throws Exception {
+        ShardedUserDAO.createSchema(shards);
+        var users = new ArrayList<User>(count);
+        for (var i = 0; i < count; i++) {
+            users.add(new User("user_" + i, "555" + i));
+        }
+        try (var sharded = new ShardedUserDAO(shards)) {
+            sharded.saveAll(users);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,93 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UserCsvTransferTest {
+    private static final int ROWS = 2_500;
+    private static final int BATCH_SIZE = 1_000;
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private UserCsvTransfer transfer;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new ConnectionPoolBuilder().withUrl("jdbc:h2:mem:test_csv;DB_CLOSE_DELAY=-1").withMaxSize(2).build();
+        try (var connection = pool.getConnection()) {
+            UserSchema.createTable(connection);
+        }
+        transfer = new UserCsvTransfer(pool, BATCH_SIZE, 256);
+        source = directory.resolve("users.csv");
+        try (var writer = Files.newBufferedWriter(source, StandardCharsets.UTF_8)) {
+            writer.write("username,phone\n");
+            for (var i = 0; i < ROWS; i++) {
+                writer.write("user_" + i + ",\"+1 555," + i + "\"\n");
+            }
+            writer.write("\"quoted \"\"name\"\"\",\n");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        pool.close();
+    }
+
+    @Test
+    void importAndExportRoundTrip() throws Exception {
+        var imported = transfer.importCsv(source, null);
+        assertEquals(ROWS + 1, imported.rows());
+
+        var exported = directory.resolve("export.csv");
+        transfer.exportCsv(exported, null);
+        assertEquals(-1, Files.mismatch(source, exported));
+    }
+
+    @Test
+    void csvReadImportsEveryRowAndReportsProgress() throws Exception {
+        var progress = new ArrayList<CsvTransferStats>();
+        var stats = transfer.importCsvRead(source, progress::add);
+
+        assertEquals(ROWS + 1, stats.rows());
+        assertEquals(Files.size(source), stats.bytes());
+        assertEquals(3, progress.size(), "one report per full batch plus the final one");
+        assertEquals(stats, progress.get(progress.size() - 1));
+
+        var userDAO = new UserDAO(pool);
+        var quoted = userDAO.findByUsername("quoted \"name\"");
+        assertEquals(1, quoted.size());
+        assertNull(quoted.get(0).getPhone());
+        assertEquals("+1 555,42", userDAO.findByUsername("user_42").get(0).getPhone());
+
+        var exported = directory.resolve("export.csv");
+        transfer.exportCsv(exported, null);
+        assertEquals(-1, Files.mismatch(source, exported));
+    }
+
+    @Test
+    void csvReadRejectsPathWithQuote() throws Exception {
+        var file = Files.copy(source, directory.resolve("o'brien.csv"));
+        assertThrows(IllegalArgumentException.class, () -> transfer.importCsvRead(file, null));
+        try (var connection = pool.getConnection(); var stmt = connection.createStatement();
+             var rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+            rs.next();
+            assertEquals(0, rs.getLong(1));
+        }
+    }
+}
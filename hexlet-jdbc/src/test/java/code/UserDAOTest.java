@@ -0,0 +1,108 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UserDAOTest {
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:test_user_dao");
+        UserSchema.create(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void usernamePagesSkipNullUsernames() throws Exception {
+        var userDAO = new UserDAO(connection);
+        userDAO.saveAll(List.of(new User(null, "1"), new User("b", "2"), new User(null, "3"), new User("a", "4"),
+                new User("c", "5")));
+
+        var names = new ArrayList<String>();
+        var page = userDAO.findPageByUsername(null, null, 2);
+        names.addAll(page.users().stream().map(User::getName).toList());
+        while (page.hasNext()) {
+            page = userDAO.continuePage(page.nextToken(), 2);
+            names.addAll(page.users().stream().map(User::getName).toList());
+        }
+        assertEquals(List.of("a", "b", "c"), names);
+    }
+
+    @Test
+    void unitOfWorkWritesSameIdOnce() throws Exception {
+        var userDAO = new UserDAOBuilder().withConnection(connection).withOptimisticLocking(true).build();
+        var user = new User("alice", "1");
+        userDAO.save(user);
+
+        var renamed = userDAO.find(user.getId()).orElseThrow();
+        var rephoned = userDAO.find(user.getId()).orElseThrow();
+        renamed.setName("alice2");
+        rephoned.setPhone("2");
+        try (var work = userDAO.beginUnitOfWork()) {
+            work.save(renamed);
+            work.save(rephoned);
+            var stats = work.commit();
+            assertEquals(1, stats.updated());
+        }
+
+        var stored = userDAO.find(user.getId()).orElseThrow();
+        assertEquals("alice2", stored.getName());
+        assertEquals("2", stored.getPhone());
+        assertEquals(1, stored.getVersion());
+        assertEquals(1, renamed.getVersion());
+        assertEquals(1, rephoned.getVersion());
+        assertFalse(renamed.isDirty());
+        assertEquals(0, userDAO.getOptimisticLockConflicts());
+    }
+
+    @Test
+    void versionFollowsRowWithoutOptimisticLocking() throws Exception {
+        var userDAO = new UserDAOBuilder().withConnection(connection).withUpsert(true).build();
+        var user = new User("erin", "1");
+        userDAO.save(user);
+        user.setPhone("2");
+        userDAO.save(user);
+        user.setName("erin2");
+        userDAO.saveAll(List.of(user));
+        assertEquals(2, user.getVersion());
+        assertEquals(2, userDAO.find(user.getId()).orElseThrow().getVersion());
+
+        var detached = new User("frank", "3");
+        detached.setId(1000L);
+        userDAO.saveAll(List.of(detached));
+        assertEquals(1, detached.getVersion());
+        assertEquals(1, userDAO.find(1000L).orElseThrow().getVersion());
+    }
+
+    @Test
+    void unitOfWorkDeleteCancelsSavesOfSameId() throws Exception {
+        var userDAO = new UserDAO(connection);
+        var user = new User("bob", "1");
+        userDAO.save(user);
+
+        var changed = userDAO.find(user.getId()).orElseThrow();
+        changed.setName("bob2");
+        try (var work = userDAO.beginUnitOfWork()) {
+            work.save(changed);
+            work.delete(userDAO.find(user.getId()).orElseThrow());
+            var stats = work.commit();
+            assertEquals(0, stats.updated());
+            assertEquals(1, stats.deleted());
+        }
+        assertTrue(userDAO.find(user.getId()).isEmpty());
+    }
+}
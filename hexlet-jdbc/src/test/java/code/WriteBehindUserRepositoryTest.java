@@ -0,0 +1,121 @@
+package code;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WriteBehindUserRepositoryTest {
+    private static final String URL = "jdbc:h2:mem:test_write_behind;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+
+    private ConnectionPool pool;
+    private UserDAO userDAO;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = new ConnectionPoolBuilder().withUrl(URL).withMaxSize(2).build();
+        try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+            UserSchema.createTable(connection);
+            stmt.execute("ALTER TABLE users ADD CONSTRAINT users_phone_valid CHECK (phone <> 'invalid')");
+        }
+        userDAO = new UserDAOBuilder().withDataSource(pool).withUpsert(true).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var connection = pool.getConnection(); var stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        pool.close();
+    }
+
+    @Test
+    void saveAfterDeleteDoesNotResurrectUser() throws Exception {
+        var user = new User("alice", "1");
+        userDAO.save(user);
+        try (var writeBehind = newRepository()) {
+            var stale = user.copy();
+            writeBehind.delete(user);
+            stale.setPhone("2");
+            assertThrows(SQLException.class, () -> writeBehind.save(stale));
+        }
+        assertTrue(userDAO.find(user.getId()).isEmpty());
+    }
+
+    @Test
+    void saveAfterCloseIsRejected() throws Exception {
+        var user = new User("bob", "1");
+        userDAO.save(user);
+        var writeBehind = newRepository();
+        user.setPhone("2");
+        writeBehind.save(user);
+        writeBehind.close();
+
+        user.setPhone("3");
+        assertThrows(SQLException.class, () -> writeBehind.save(user));
+        assertEquals("2", userDAO.find(user.getId()).orElseThrow().getPhone());
+    }
+
+    @Test
+    void failedFlushRequeuesOnlyUncommittedUsers() throws Exception {
+        var renamed = new User("carol", "1");
+        var invalid = new User("dave", "1");
+        userDAO.saveAll(List.of(renamed, invalid));
+
+        try (var writeBehind = newRepository()) {
+            renamed.setName("carol2");
+            invalid.setPhone("invalid");
+            writeBehind.save(renamed);
+            writeBehind.save(invalid);
+
+            assertThrows(SQLException.class, writeBehind::flush);
+            assertEquals(1, writeBehind.getStats().pending());
+            assertEquals("carol2", userDAO.find(renamed.getId()).orElseThrow().getName());
+
+            invalid.setPhone("2");
+            writeBehind.save(invalid);
+        }
+        assertEquals("2", userDAO.find(invalid.getId()).orElseThrow().getPhone());
+    }
+
+    @Test
+    void findSeesBatchWhileItIsBeingWritten() throws Exception {
+        var user = new User("erin", "1");
+        userDAO.save(user);
+        try (var writeBehind = newRepository(); var blocker = DriverManager.getConnection(URL)) {
+            user.setPhone("2");
+            writeBehind.save(user);
+
+            // незакоммиченное обновление держит блокировку строки, и запись пакета ждёт её
+            blocker.setAutoCommit(false);
+            try (var stmt = blocker.createStatement()) {
+                stmt.executeUpdate("UPDATE users SET username = username WHERE id = " + user.getId());
+            }
+            var flush = new FutureTask<Void>(() -> {
+                writeBehind.flush();
+                return null;
+            });
+            new Thread(flush).start();
+            while (writeBehind.getStats().pending() > 0) {
+                Thread.sleep(5);
+            }
+
+            assertEquals("2", writeBehind.find(user.getId()).orElseThrow().getPhone());
+            blocker.rollback();
+            flush.get();
+        }
+        assertEquals("2", userDAO.find(user.getId()).orElseThrow().getPhone());
+    }
+
+    private WriteBehindUserRepository newRepository() {
+        return new WriteBehindUserRepository(userDAO, 100, Duration.ofHours(1), 100);
+    }
+}